@@ -18,6 +18,13 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.content.ContextCompat;
 
+import com.cookingit.dicetactoe.ai.AiPlayer;
+import com.cookingit.dicetactoe.ai.ExpectimaxAiPlayer;
+import com.cookingit.dicetactoe.ai.ExpectiminimaxSolver;
+import com.cookingit.dicetactoe.ai.GreedyAiPlayer;
+import com.cookingit.dicetactoe.ai.MctsAiPlayer;
+import com.cookingit.dicetactoe.ai.RandomAiPlayer;
+import com.cookingit.dicetactoe.ai.SolverAiPlayer;
 import com.cookingit.dicetactoe.firebase.FirebaseManager;
 import com.cookingit.dicetactoe.firebase.GameManager;
 import com.google.firebase.auth.FirebaseAuth;
@@ -41,8 +48,9 @@ import com.google.firebase.auth.FirebaseUser;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements PvPGameOptionsDialogFragment.PvPGameOptionsListener {
 
@@ -64,6 +72,9 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
     private String language = "English";
     private boolean isVsAI = false;
     private boolean isAITurnInProgress = false;
+    private AiPlayer aiPlayer = new RandomAiPlayer();
+    // AI decisions run here on a copy of the engine, results are applied on the UI thread
+    private final ExecutorService aiExecutor = Executors.newSingleThreadExecutor();
     private static final int MAX_AUTH_RETRIES = 3;
     private Toast currentToast;
     private boolean isAuthenticated = false;
@@ -122,19 +133,23 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
 
     private void setupGameBoard() {
         gameBoard.removeAllViews();
-        for (int i = 0; i < 9; i++) {
+        // The board keeps the width of the standard 3x3 one, 240px per cell, whatever its size
+        int size = gameEngine.getRules().size();
+        gameBoard.setColumnCount(size);
+        gameBoard.setRowCount(size);
+        for (int i = 0; i < gameEngine.getRules().cells(); i++) {
             TextView cell = new TextView(this);
             GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-            params.width = 240;
-            params.height = 240;
+            params.width = 720 / size;
+            params.height = 720 / size;
             params.setMargins(2, 2, 2, 2);
             cell.setLayoutParams(params);
             cell.setBackgroundResource(R.drawable.board_cell_bg);
             cell.setGravity(Gravity.CENTER);
-            cell.setTextSize(24);
+            cell.setTextSize(72 / size);
 
-            final int row = i / 3;
-            final int col = i % 3;
+            final int row = i / size;
+            final int col = i % size;
             cell.setOnClickListener(v -> handleCellClick(row, col));
 
             gameBoard.addView(cell);
@@ -154,8 +169,19 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         layout.setOrientation(LinearLayout.VERTICAL);
         layout.setPadding(16, 16, 16, 16);
 
-        String[] gameModes = {"Training", "PvP", "Single Player vs. AI", "Game Hints"}; //, "Multiplayer", "Timed Mode", "Custom Rules"};
-        builder.setItems(gameModes, (dialog, which) -> {
+        String[] gameModes = {"Training", "PvP", "Single Player vs. AI", "Game Hints", "Custom Rules"}; //, "Multiplayer", "Timed Mode"};
+        // Undo is only offered in Training, where one person plays both sides
+        boolean canUndo = !isOnlineMode && !isVsAI && gameEngine.canUndo();
+        String[] items = gameModes;
+        if (canUndo) {
+            items = Arrays.copyOf(gameModes, gameModes.length + 1);
+            items[gameModes.length] = "Undo Last Action";
+        }
+        builder.setItems(items, (dialog, which) -> {
+            if (which == gameModes.length) {
+                undoLastAction();
+                return;
+            }
             switch (which) {
                 case 0: // Training
                     showTrainingDifficultySelection();
@@ -169,14 +195,14 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
                 case 3: // Game Hints
                     gameHintsOptions();
                     break;
-//                case 4: // Multiplayer
+                case 4: // Custom Rules
+                    showCustomRulesOptions();
+                    break;
+//                case 5: // Multiplayer
 //                    showMultiplayerOptions();
 //                    break;
-//                case 5: // Timed Mode
+//                case 6: // Timed Mode
 //                    startTimedMode();
-//                    break;
-//                case 6: // Custom Rules
-//                    showCustomRulesOptions();
 //                    break;
             }
         });
@@ -256,6 +282,16 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         builder.show();
     }
 
+    // Steps back one roll, stop, placement or pass
+    private void undoLastAction() {
+        if (!gameEngine.undoAction()) {
+            showToast("Nothing to undo");
+            return;
+        }
+        updateBoardState();
+        updateDiceDisplay();
+    }
+
     private void showTrainingDifficultySelection() {
         String[] difficulties = {"Easy", "Medium", "Hard"};
         new AlertDialog.Builder(this)
@@ -276,6 +312,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
     private void setupTrainingGame() {
         isOnlineMode = false;
         isVsAI = false;
+        prepareSolver();
         startNewGame();
         showToast("Starting Training mode on " + trainingDifficulty + " difficulty");
     }
@@ -483,6 +520,10 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         if (isOnlineMode && firebaseManager != null) {
             firebaseManager.cleanup();
         }
+        aiExecutor.shutdownNow();
+        if (aiPlayer instanceof MctsAiPlayer) {
+            ((MctsAiPlayer) aiPlayer).shutdown();
+        }
         super.onDestroy();
     }
 
@@ -492,7 +533,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         super.onStop();
         // If we're in online mode, we should update our status to show we're not active
         if (isOnlineMode && firebaseManager != null && !isFinishing()) {
-            // No need to fully leave the game, the heartbeat mechanism will handle temporary absence
+            // No need to fully leave the game, presence and its reconnect grace handle temporary absence
         }
     }
 
@@ -502,7 +543,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         super.onResume();
         // If we're in online mode, update our status to show we're active again
         if (isOnlineMode && firebaseManager != null) {
-            // The next heartbeat will update our timestamp
+            // Presence is set again as soon as the connection is back
         }
     }
 
@@ -512,16 +553,23 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
     }
 
     private void showCustomRulesOptions() {
-        String[] customRules = {"Change Number of Dice", "Modify Grid Size"};
+        if (isOnlineMode) {
+            showToast("Online games always use the standard rules");
+            return;
+        }
+        String[] customRules = {"Change Number of Dice", "Modify Grid Size", "Standard Rules"};
         new AlertDialog.Builder(this)
-                .setTitle("Custom Rules")
+                .setTitle("Custom Rules (" + gameEngine.getRules() + ")")
                 .setItems(customRules, (dialog, which) -> {
                     switch (which) {
                         case 0: // Change Number of Dice
-                            showToast("Changing number of dice not implemented yet");
+                            showDiceCountOptions();
                             break;
                         case 1: // Modify Grid Size
-                            showToast("Modifying grid size not implemented yet");
+                            showGridSizeOptions();
+                            break;
+                        case 2: // Standard Rules
+                            applyRules(GameRules.STANDARD);
                             break;
                     }
                 })
@@ -529,6 +577,66 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
                 .show();
     }
 
+    private void showDiceCountOptions() {
+        GameRules rules = gameEngine.getRules();
+        String[] counts = new String[GameRules.MAX_DICE - GameRules.MIN_DICE + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = (GameRules.MIN_DICE + i) + " dice";
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Number of Dice")
+                .setSingleChoiceItems(counts, rules.dice() - GameRules.MIN_DICE, (dialog, which) -> {
+                    dialog.dismiss();
+                    applyRules(GameRules.of(rules.size(), rules.lineLength(), GameRules.MIN_DICE + which));
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // Boards above 7x7 would leave cells too small to tap
+    private void showGridSizeOptions() {
+        String[] sizes = new String[7 - GameRules.MIN_SIZE + 1];
+        for (int i = 0; i < sizes.length; i++) {
+            int size = GameRules.MIN_SIZE + i;
+            sizes[i] = size + " x " + size;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Grid Size")
+                .setSingleChoiceItems(sizes, Math.min(gameEngine.getRules().size() - GameRules.MIN_SIZE, sizes.length - 1),
+                        (dialog, which) -> {
+                            dialog.dismiss();
+                            showLineLengthOptions(GameRules.MIN_SIZE + which);
+                        })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showLineLengthOptions(int size) {
+        String[] lengths = new String[size - GameRules.MIN_SIZE + 1];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = (GameRules.MIN_SIZE + i) + " in a row";
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Marks in a Row to Win")
+                .setItems(lengths, (dialog, which) -> applyRules(
+                        GameRules.of(size, GameRules.MIN_SIZE + which, gameEngine.getRules().dice())))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // Switches the local game to new rules, rebuilding the board and starting over
+    private void applyRules(GameRules rules) {
+        if (rules == gameEngine.getRules()) return;
+        Log.d("DiceTacToe", "Switching rules to " + rules);
+        gameEngine.setRules(rules);
+        setupGameBoard();
+        if (isVsAI) {
+            aiPlayer = createAiPlayer(aiDifficulty);
+        }
+        startNewGame();
+        showToast("Rules: " + rules);
+    }
+
     private void showSettingsDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Settings");
@@ -677,6 +785,11 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
             return;
         }
         isOnlineMode = true;
+        if (!gameEngine.getRules().isStandard()) {
+            // The game document only describes the standard board
+            gameEngine.setRules(GameRules.STANDARD);
+            setupGameBoard();
+        }
 
         // If we already have a Firebase manager, reinitialize it to clear any old state
         if (firebaseManager == null) {
@@ -694,6 +807,8 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
     private void setupComputerGame() {
         isOnlineMode = false;
         isVsAI = true;
+        aiPlayer = createAiPlayer(aiDifficulty);
+        gameEngine.setRecord(new GameRecord(gameEngine.getRules()));
         gameEngine.newGame();
         findViewById(R.id.skip_btn).setEnabled(false);
         updateBoardState();
@@ -701,7 +816,46 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         showToast("Playing against AI on " + aiDifficulty + " mode");
     }
 
+    // Easy and medium search for a fixed time per decision, hard plays the exact solution.
+    // MCTS and the solver only know the standard rules, so custom rules use depth-limited expectimax
+    private AiPlayer createAiPlayer(String difficulty) {
+        if (aiPlayer instanceof MctsAiPlayer) {
+            ((MctsAiPlayer) aiPlayer).shutdown();
+        }
+        if (!gameEngine.getRules().isStandard()) {
+            switch (difficulty) {
+                case "hard":
+                    return new ExpectimaxAiPlayer(200);
+                case "medium":
+                    return new ExpectimaxAiPlayer(50);
+                default:
+                    return new GreedyAiPlayer();
+            }
+        }
+        switch (difficulty) {
+            case "hard":
+                prepareSolver();
+                return new SolverAiPlayer();
+            case "medium":
+                return new MctsAiPlayer(400, 0);
+            default:
+                return new MctsAiPlayer(100, 2000);
+        }
+    }
+
+    // Solves the game off the UI thread; until it is done the hard AI plays randomly and no hints show
+    private void prepareSolver() {
+        if (ExpectiminimaxSolver.getIfReady() != null) return;
+        new Thread(() -> {
+            long start = System.currentTimeMillis();
+            ExpectiminimaxSolver solver = ExpectiminimaxSolver.getInstance();
+            Log.d("DiceTacToe", "Solved " + solver.getSolvedPositionCount() + " positions in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }, "dice-tac-toe-solver").start();
+    }
+
     private void startNewGame() {
+        gameEngine.setRecord(isOnlineMode ? null : new GameRecord(gameEngine.getRules()));
         gameEngine.newGame();
         if (!isOnlineMode && !isVsAI) {
             isMyTurn = true; // In Training mode, the human player controls both X and O
@@ -724,19 +878,18 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
 
     public void updateDiceDisplay() {
         diceContainer.removeAllViews();
-        List<Integer> diceValues = gameEngine.getDiceValues(); // Changed from int[]
-        //int[] diceValues = gameEngine.getDiceValues();
 
         boolean canKeepDice = gameEngine.hasDiceRolled() && gameEngine.getRollsLeft() > 0 && isMyTurn;
         Log.d("DiceTacToe", "Can keep dice: " + canKeepDice + ", hasDiceRolled: " + gameEngine.hasDiceRolled() + ", rollsLeft: " + gameEngine.getRollsLeft());
 
-        for (int i = 0; i < diceValues.size(); i++) {   // for (int i = 0; i < diceValues.length; i++)
+        for (int i = 0; i < gameEngine.getDiceCount(); i++) {
             final int index = i;
             TextView dieView = new TextView(this);
-            dieView.setText(String.valueOf(diceValues.get(index)));
-            //dieView.setText(String.valueOf(diceValues[index]));
+            dieView.setText(String.valueOf(gameEngine.getDie(index)));
             dieView.setTextSize(24);
-            dieView.setPadding(42, 24, 42, 24);
+            // Narrower dice so up to eight fit in one row
+            int padding = gameEngine.getDiceCount() > 5 ? 20 : 42;
+            dieView.setPadding(padding, 24, padding, 24);
             LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
                     LinearLayout.LayoutParams.WRAP_CONTENT,
                     LinearLayout.LayoutParams.WRAP_CONTENT
@@ -772,7 +925,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
                     dieView.setBackground(newLayerDrawable);
                     Log.d("DiceTacToe", "Die " + index + " clicked, new kept status: " + newKeptStatus);
                     if (isOnlineMode) {
-                        firebaseManager.updateDiceState(gameEngine.getDiceValues(), gameEngine.getCurrentCombination());
+                        firebaseManager.updateDiceState(gameEngine.getDiceValues(), gameEngine.getKeptMask(), gameEngine.getCurrentCombination());
                     }
                 });
             } else {
@@ -783,23 +936,29 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         }
     }
 
+    public void updateScoreDisplay() {
+        playerXScoreText.setText(String.valueOf(gameEngine.getPlayerXScore()));
+        playerOScoreText.setText(String.valueOf(gameEngine.getPlayerOScore()));
+    }
+
     public void updateBoardState() {
-        for (int i = 0; i < 9; i++) {
+        int size = gameEngine.getRules().size();
+        for (int i = 0; i < gameEngine.getRules().cells(); i++) {
             TextView cell = (TextView) gameBoard.getChildAt(i);
-            int row = i / 3;
-            int col = i % 3;
-            cell.setText(gameEngine.getCellValue(row, col));
+            int row = i / size;
+            int col = i % size;
+            Player value = gameEngine.getCellValue(row, col);
+            cell.setText(value != null ? value.name() : null);
         }
 
         // Always update score displays regardless of game state
-        playerXScoreText.setText(String.valueOf(gameEngine.getPlayerXScore()));
-        playerOScoreText.setText(String.valueOf(gameEngine.getPlayerOScore()));
+        updateScoreDisplay();
 
         if (gameEngine.getGameState() == GameEngine.GameState.GAME_OVER) {
-            String winner = gameEngine.getWinner();
+            Player winner = gameEngine.getWinner();
             TextView diceInstruction = findViewById(R.id.dice_instruction);
             // Update the instruction text for game over state
-            if ("Draw".equals(winner)) {
+            if (gameEngine.isDraw()) {
                 currentPlayerText.setText("Game Over: It's a Draw!");
                 diceInstruction.setText("Game Over: It's a Draw!");
             } else if (winner != null) {
@@ -813,6 +972,11 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
             rollBtn.setEnabled(false);
             rollBtn.setBackgroundTintList(ContextCompat.getColorStateList(this, R.color.controlBackground));
 
+            // Hex event log, enough to replay the game with GameRecord.fromHex(...).replay()
+            if (gameEngine.getRecord() != null) {
+                Log.d("DiceTacToe", "Game record: " + gameEngine.getRecord());
+            }
+
 //            playerXScoreText.setText(String.valueOf(gameEngine.getPlayerXScore()));
 //            playerOScoreText.setText(String.valueOf(gameEngine.getPlayerOScore()));
 
@@ -825,7 +989,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
 
         // Set isMyTurn for Player vs AI mode
         if (isVsAI && !isOnlineMode) {
-            isMyTurn = gameEngine.getCurrentPlayer().equals("X"); // Player X is the human player
+            isMyTurn = gameEngine.getCurrentPlayer() == Player.X; // Player X is the human player
         }
         // Set isMyTurn for Training mode (Local PvP)
         else if (!isOnlineMode && !isVsAI) {
@@ -834,7 +998,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
 
         // Trigger AI turn if applicable
         if (isVsAI && !isOnlineMode
-                && gameEngine.getCurrentPlayer().equals("O")
+                && gameEngine.getCurrentPlayer() == Player.O
                 && gameEngine.getGameState() != GameEngine.GameState.GAME_OVER
                 && !isAITurnInProgress) {
             new android.os.Handler().postDelayed(() -> handleAITurn(), 1000);
@@ -866,7 +1030,8 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         boolean enableSkip = gameEngine.hasDiceRolled() && gameEngine.getRollsLeft() > 0 && (!isOnlineMode || isMyTurn);
         skipBtn.setEnabled(enableSkip);
 
-        diceComboText.setText((gameEngine.getCurrentCombination().isEmpty() ? "–" : gameEngine.getCurrentCombination()));
+        Combo combo = gameEngine.getCurrentCombination();
+        diceComboText.setText(combo == null ? "–" : combo.key());
         placementRuleText.setText((gameEngine.getPlacementRule() == null ? "–" : gameEngine.getPlacementRule()));
 
         updateValidCellsHighlight();
@@ -894,18 +1059,51 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         }
 
         new android.os.Handler().postDelayed(() -> {
-            boolean noMoves = gameEngine.rollDice();
-            updateDiceDisplay();
-            updateBoardState();
+            if (!gameEngine.hasDiceRolled()) {
+                applyAIKeep(0);
+                return;
+            }
+            GameEngine snapshot = gameEngine.copy();
+            aiExecutor.execute(() -> {
+                int keepMask = aiPlayer.chooseKeepMask(snapshot);
+                // Interrupted by onDestroy: the search result is a fallback, drop the turn
+                if (Thread.currentThread().isInterrupted()) return;
+                runOnUiThread(() -> applyAIKeep(keepMask));
+            });
+        }, 1000);
+    }
 
-            if (noMoves) {
+    private void applyAIKeep(int keepMask) {
+        if (!isAIStillToMove()) return;
+        if (keepMask == AiPlayer.stopRolling(gameEngine)) {
+            if (gameEngine.skipRolls()) {
                 gameEngine.makeMove(-1, -1);
                 isAITurnInProgress = false;
                 updateBoardState();
             } else {
-                rollAIDice(); // Continue rolling
+                placeAIMark();
             }
-        }, 1000);
+            return;
+        }
+        gameEngine.setKeptMask(keepMask);
+        boolean noMoves = gameEngine.rollDice();
+        updateDiceDisplay();
+        updateBoardState();
+
+        if (noMoves) {
+            gameEngine.makeMove(-1, -1);
+            isAITurnInProgress = false;
+            updateBoardState();
+        } else {
+            rollAIDice(); // Continue rolling
+        }
+    }
+
+    // False once the game was left or restarted while the AI was thinking
+    private boolean isAIStillToMove() {
+        return isVsAI && !isOnlineMode
+                && gameEngine.getCurrentPlayer() == Player.O
+                && gameEngine.getGameState() != GameEngine.GameState.GAME_OVER;
     }
 
     private void cleanupOldGames() {
@@ -955,20 +1153,26 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
     }
 
     private void placeAIMark() {
-        List<int[]> validPositions = gameEngine.getValidPositions();
-        if (validPositions.isEmpty()) {
-            gameEngine.makeMove(-1, -1);
-        } else {
-            // Simple AI: Random selection (easy mode)
-            int[] pos = validPositions.get((int) (Math.random() * validPositions.size()));
-            gameEngine.makeMove(pos[0], pos[1]);
-        }
-        isAITurnInProgress = false;
-        updateBoardState();
+        GameEngine snapshot = gameEngine.copy();
+        aiExecutor.execute(() -> {
+            int cell = aiPlayer.chooseCell(snapshot);
+            if (Thread.currentThread().isInterrupted()) return;
+            runOnUiThread(() -> {
+                if (!isAIStillToMove()) return;
+                if (cell < 0) {
+                    gameEngine.makeMove(-1, -1);
+                } else {
+                    int size = gameEngine.getRules().size();
+                    gameEngine.makeMove(cell / size, cell % size);
+                }
+                isAITurnInProgress = false;
+                updateBoardState();
+            });
+        });
     }
 
     private void handleCellClick(int row, int col) {
-        if (isVsAI && gameEngine.getCurrentPlayer().equals("O")) {
+        if (isVsAI && gameEngine.getCurrentPlayer() == Player.O) {
             showToast("AI's turn. Please wait.");
             return;
         }
@@ -996,21 +1200,15 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
     }
 
     private void updateValidCellsHighlight() {
-        List<int[]> validPositions = gameEngine.getValidPositions();
-        for (int i = 0; i < 9; i++) {
+        long validMask = gameEngine.getValidMoves();
+        int hintCell = getHintCell();
+        for (int i = 0; i < gameEngine.getRules().cells(); i++) {
             TextView cell = (TextView) gameBoard.getChildAt(i);
-            int row = i / 3;
-            int col = i % 3;
-            boolean isValid = false;
+            boolean isValid = (validMask & (1L << i)) != 0;
 
-            for (int[] pos : validPositions) {
-                if (pos[0] == row && pos[1] == col) {
-                    isValid = true;
-                    break;
-                }
-            }
-
-            if (isValid) {
+            if (i == hintCell) {
+                cell.setBackgroundResource(R.drawable.hint_cell_bg);
+            } else if (isValid) {
                 cell.setBackgroundResource(R.drawable.valid_cell_bg);
             } else {
                 cell.setBackgroundResource(R.drawable.board_cell_bg);
@@ -1018,6 +1216,16 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
         }
     }
 
+    // Cell the solver recommends in Training mode, or -1 when hints are off or not available
+    private int getHintCell() {
+        if (isOnlineMode || isVsAI || !gameEngine.hintsEnabled() || !gameEngine.getRules().isStandard()
+                || gameEngine.getGameState() != GameEngine.GameState.PLACING) {
+            return -1;
+        }
+        ExpectiminimaxSolver solver = ExpectiminimaxSolver.getIfReady();
+        return solver == null ? -1 : solver.bestCell(gameEngine);
+    }
+
     private void setupButtonListeners() {
 
         findViewById(R.id.roll_btn).setOnClickListener(v -> {
@@ -1034,7 +1242,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
             updateBoardState();
             updateDiceDisplay();
             if (isOnlineMode && gameEngine.getRollsLeft() > 0) {
-                firebaseManager.updateDiceState(gameEngine.getDiceValues(), gameEngine.getCurrentCombination());
+                firebaseManager.updateDiceState(gameEngine.getDiceValues(), gameEngine.getKeptMask(), gameEngine.getCurrentCombination());
             }
         });
 
@@ -1051,7 +1259,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
             }
             updateBoardState();
             if (isOnlineMode && gameEngine.getRollsLeft() > 0) {
-                firebaseManager.updateDiceState(gameEngine.getDiceValues(), gameEngine.getCurrentCombination());
+                firebaseManager.updateDiceState(gameEngine.getDiceValues(), gameEngine.getKeptMask(), gameEngine.getCurrentCombination());
             }
         });
 
@@ -1063,7 +1271,7 @@ public class MainActivity extends AppCompatActivity implements PvPGameOptionsDia
                 // Manually clear the winner state in GameEngine first
                 if (gameEngine.getWinner() != null) {
                     // Store the winner for score calculation
-                    String previousWinner = gameEngine.getWinner();
+                    Player previousWinner = gameEngine.getWinner();
                     gameEngine.setWinner(null);
 
                     // Use the new method to reset and create a fresh game
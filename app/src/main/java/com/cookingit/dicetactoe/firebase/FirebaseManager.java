@@ -1,14 +1,22 @@
 package com.cookingit.dicetactoe.firebase;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
 import com.cookingit.dicetactoe.GameEngine;
 import com.cookingit.dicetactoe.MainActivity;
+import com.cookingit.dicetactoe.Player;
+import com.cookingit.dicetactoe.StateCodec;
+import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
@@ -22,6 +30,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class FirebaseManager {
     private final DatabaseReference dbRef = FirebaseDatabase.getInstance().getReference();
@@ -31,11 +43,30 @@ public class FirebaseManager {
     private final String playerId;
     private boolean isPlayerX;
     private boolean lastIsMyTurn = false;
-    private int joinRetryCount = 0;
-    private static final int MAX_JOIN_RETRIES = 3;
-    private ValueEventListener gameListener;
+    private static final int LOBBY_SHARDS = 8;
+    private DatabaseReference lobbyEntryRef;  // Our open game's queue entry, until someone claims it
+    private ChildEventListener gameListener;
+    private GameManager remoteState = new GameManager();  // Mirror of the game node, one field at a time
+    private int pendingFields;                              // GameManager.FIELD_ groups not yet applied
+    private boolean flushPosted;
+    private final WriteBatcher writeBatcher = new WriteBatcher();
+    private int lastPackedDice;  // Dice last queued, to tell a new roll from a keep toggle
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // One scheduler thread for every game's reconnect grace timer
+    private static final ScheduledExecutorService LIVENESS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "liveness");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long RECONNECT_GRACE_MILLIS = 10000;
+    private final DatabaseReference connectedRef = FirebaseDatabase.getInstance().getReference(".info/connected");
+    private ValueEventListener connectedListener;
+    private DatabaseReference presenceRef;
+    private ScheduledFuture<?> opponentGoneCheck;
     private DatabaseReference gameRef;
     private boolean isLeavingGame = false;
+    private long moveSeq = -1;      // Sequence number of the last move applied or sent
 
     public FirebaseManager(MainActivity activity, GameEngine gameEngine) {
         this.activity = activity;
@@ -55,409 +86,156 @@ public class FirebaseManager {
         return gameId;
     }
 
+    // Matchmaking goes through a queue of open games, lobby/<shard>/<gameId> = {creator, role, target}.
+    // A searcher claims an entry by removing it inside a transaction on its shard, so no two
+    // searchers get the same game. Open games are spread over the shards by game id. A rematch
+    // game carries the player it waits for as its target and sits in that player's shard, which
+    // is the first one that player searches, so a target finds its rematch before any other game
     public void findOrCreateGame() {
-        if (joinRetryCount >= MAX_JOIN_RETRIES) {
-            Log.w("FirebaseManager", "Max retries reached, creating a new game");
-            joinRetryCount = 0;
-            createGame();
-            return;
-        }
-
-        // First, let's check if there are any games specifically waiting for this player
-        dbRef.child("games")
-                .orderByChild("targetOpponentId")
-                .equalTo(playerId)
-                .limitToFirst(1)
-                .get()
-                .addOnCompleteListener(targetTask -> {
-                    if (targetTask.isSuccessful() && targetTask.getResult().exists()) {
-                        boolean targetGameFound = false;
-                        for (DataSnapshot gameSnapshot : targetTask.getResult().getChildren()) {
-                            GameManager gameData = gameSnapshot.getValue(GameManager.class);
-                            if (gameData != null &&
-                                    "waiting".equals(gameData.status) &&
-                                    gameData.pairPreserve) {
-
-                                String gameId = gameSnapshot.getKey();
-                                Log.d("FirebaseManager", "Found a paired game waiting for me: " + gameId);
-                                joinGame(gameId);
-                                targetGameFound = true;
-                                break;
-                            }
-                        }
-
-                        if (targetGameFound) {
-                            return; // We found a targeted game
-                        }
-                    }
-
-                    // If no targeted games, look for any waiting games
-                    dbRef.child("games")
-                            .orderByChild("status")
-                            .equalTo("waiting")
-                            .limitToFirst(1)
-                            .get()
-                            .addOnCompleteListener(task -> {
-                                if (task.isSuccessful()) {
-                                    DataSnapshot snapshot = task.getResult();
-                                    if (snapshot.exists()) {
-                                        boolean gameFound = false;
-                                        for (DataSnapshot gameSnapshot : snapshot.getChildren()) {
-                                            GameManager gameData = gameSnapshot.getValue(GameManager.class);
-
-                                            // Skip games that are waiting for a specific other player
-                                            if (gameData != null &&
-                                                    gameData.targetOpponentId != null &&
-                                                    !gameData.targetOpponentId.equals(playerId)) {
-                                                continue;
-                                            }
-
-                                            String gameId = gameSnapshot.getKey();
-                                            joinRetryCount++;
-                                            joinGame(gameId);
-                                            gameFound = true;
-                                            break;
-                                        }
-                                        if (!gameFound) {
-                                            createGame();
-                                        }
-                                    } else {
-                                        createGame();
-                                    }
-                                } else {
-                                    Log.e("FirebaseManager", "Failed to find game: " + task.getException().getMessage());
-                                    activity.runOnUiThread(() -> activity.showToast("Failed to find game: " + task.getException().getMessage()));
-                                    createGame();
-                                }
-                            });
-                });
+        claimFromLobby(shardFor(playerId), LOBBY_SHARDS, null, this::createGame);
     }
 
-    public void joinGame(String gameId) {
-        this.gameId = gameId;
-
-        // Before joining, get current game state to verify it's joinable
-        dbRef.child("games").child(gameId).get().addOnSuccessListener(snapshot -> {
-            GameManager existingGame = snapshot.getValue(GameManager.class);
-            if (existingGame == null || !"waiting".equals(existingGame.status)) {
-                Log.e("FirebaseManager", "Game not joinable: " +
-                        (existingGame != null ? existingGame.status : "null"));
-                activity.runOnUiThread(() -> activity.showToast("Game not available, trying another..."));
-                findOrCreateGame();
-                return;
-            }
-
-            // Check if this is a paired game targeting this player specifically
-            if (existingGame.pairPreserve && existingGame.targetOpponentId != null
-                    && !existingGame.targetOpponentId.equals(playerId)) {
-                // This game is waiting for a specific player, but it's not us
-                Log.d("FirebaseManager", "This game is waiting for a specific player: " + existingGame.targetOpponentId);
-                activity.runOnUiThread(() -> activity.showToast("Game is reserved for another player"));
-                findOrCreateGame();
-                return;
-            }
-
-            // Determine the role that should be assigned to this player
-            String creatorId = existingGame.gameCreatedBy;
-            if (creatorId == null) {
-                Log.e("FirebaseManager", "Game creator ID is missing");
-                findOrCreateGame();
-                return;
-            }
-
-            // Find what role the creator has
-            String creatorRole = null;
-            for (Map.Entry<String, String> entry : existingGame.players.entrySet()) {
-                if (entry.getKey().equals(creatorId)) {
-                    creatorRole = entry.getValue();
-                    break;
-                }
-            }
-
-            if (creatorRole == null) {
-                Log.e("FirebaseManager", "Creator role not found");
-                findOrCreateGame();
-                return;
-            }
-
-            // Join with the opposite role of the creator
-            final String myRole = "X".equals(creatorRole) ? "O" : "X";
-            isPlayerX = "X".equals(myRole);
-
-            Log.d("FirebaseManager", "Will join game as: " + myRole +
-                    " (creator is: " + creatorRole + ")");
-
-            // For paired games, we want to preserve the score from previous game
-            if (existingGame.pairPreserve && existingGame.previousGameId != null) {
-                // Try to get the scores from the previous game
-                dbRef.child("games").child(existingGame.previousGameId).get()
-                        .addOnSuccessListener(prevSnapshot -> {
-                            GameManager prevGame = prevSnapshot.getValue(GameManager.class);
-                            if (prevGame != null) {
-                                // Update local scores before joining
-                                gameEngine.setPlayerXScore(prevGame.playerXScore);
-                                gameEngine.setPlayerOScore(prevGame.playerOScore);
-                                Log.d("FirebaseManager", "Preserved scores from previous game - X: " +
-                                        prevGame.playerXScore + ", O: " + prevGame.playerOScore);
-                            }
-                            // Now perform the join transaction
-                            performJoinTransaction(gameId, myRole);
-                        })
-                        .addOnFailureListener(e -> {
-                            // If we can't get previous game, join anyway
-                            Log.e("FirebaseManager", "Failed to get previous game: " + e.getMessage());
-                            performJoinTransaction(gameId, myRole);
-                        });
-            } else {
-                // Regular join for non-paired games
-                performJoinTransaction(gameId, myRole);
-            }
-        }).addOnFailureListener(e -> {
-            Log.e("FirebaseManager", "Failed to get game state: " + e.getMessage());
-            findOrCreateGame();
-        });
+    private static int shardFor(String key) {
+        return (key.hashCode() & 0x7fffffff) % LOBBY_SHARDS;
     }
 
-    private void performJoinTransaction(String gameId, String myRole) {
-        DatabaseReference gameRef = dbRef.child("games").child(gameId);
-        gameRef.runTransaction(new Transaction.Handler() {
+    // Tries shards from shard onwards and joins the first game claimed; runs ifNone if nothing could be
+    // joined. Entries targeting another player are never taken, and with onlyFrom set only a rematch
+    // game that player queued for us is
+    private void claimFromLobby(int shard, int shardsLeft, String onlyFrom, Runnable ifNone) {
+        if (shardsLeft == 0) {
+            ifNone.run();
+            return;
+        }
+        int nextShard = (shard + 1) % LOBBY_SHARDS;
+        final String[] claim = new String[2]; // game id and its creator's role, from the last run
+        dbRef.child("lobby").child(String.valueOf(shard)).runTransaction(new Transaction.Handler() {
             @NonNull
             @Override
-            public Transaction.Result doTransaction(@NonNull MutableData mutableData) {
-                try {
-                    GameManager game = mutableData.getValue(GameManager.class);
-                    if (game == null || !"waiting".equals(game.status)) {
-                        return Transaction.abort();
-                    }
-
-                    // Set game status to playing
-                    game.status = "playing";
-
-                    // Add this player with the determined role
-                    if (game.players == null) {
-                        game.players = new HashMap<>();
-                    }
-                    game.players.put(playerId, myRole);
-
-                    // Update timestamps
-                    if (game.playerTimestamps == null) {
-                        game.playerTimestamps = new HashMap<>();
+            public Transaction.Result doTransaction(@NonNull MutableData shardData) {
+                claim[0] = null;
+                claim[1] = null;
+                MutableData chosen = null;
+                for (MutableData entry : shardData.getChildren()) {
+                    String creator = entry.child("creator").getValue(String.class);
+                    String role = entry.child("role").getValue(String.class);
+                    String target = entry.child("target").getValue(String.class);
+                    if (creator == null || creator.equals(playerId) || role == null) continue;
+                    if (playerId.equals(target) && (onlyFrom == null || onlyFrom.equals(creator))) {
+                        chosen = entry; // a rematch waiting for us wins over open games
+                        break;
                     }
-                    game.playerTimestamps.put(playerId, ServerValue.TIMESTAMP);
-
-                    // Clear pairing-specific fields now that the pairing is complete
-                    // We keep pairPreserve=true to indicate this game should maintain pairing for the next game
-                    game.targetOpponentId = null;
-
-                    // Update the game state
-                    mutableData.setValue(game);
-                    return Transaction.success(mutableData);
-                } catch (Exception e) {
-                    Log.e("FirebaseManager", "Join transaction error: " + e.getMessage(), e);
-                    return Transaction.abort();
+                    if (chosen == null && target == null && onlyFrom == null) chosen = entry;
+                }
+                if (chosen != null) {
+                    claim[0] = chosen.getKey();
+                    claim[1] = chosen.child("role").getValue(String.class);
+                    chosen.setValue(null);
                 }
+                // Commit even when nothing was claimed: the first run may see an empty local cache,
+                // and only a commit makes the server rerun us on its copy of the shard
+                return Transaction.success(shardData);
             }
 
             @Override
-            public void onComplete(@Nullable DatabaseError error, boolean committed,
-                                   @Nullable DataSnapshot snapshot) {
-                if (!committed || error != null) {
-                    Log.e("FirebaseManager", "Join transaction failed: " +
-                            (error != null ? error.getMessage() : "aborted"));
-                    findOrCreateGame();
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                Runnable next = () -> claimFromLobby(nextShard, shardsLeft - 1, onlyFrom, ifNone);
+                if (error != null || !committed || claim[0] == null) {
+                    if (error != null) {
+                        Log.e("FirebaseManager", "Lobby shard " + shard + " failed: " + error.getMessage());
+                    }
+                    next.run();
                     return;
                 }
-
-                // Get the latest game state after successfully joining
-                gameRef.get().addOnSuccessListener(dataSnapshot -> {
-                    GameManager updatedGame = dataSnapshot.getValue(GameManager.class);
-                    if (updatedGame != null) {
-                        Log.d("FirebaseManager", "Successfully joined game as: " + myRole);
-
-                        // Set turn status based on current player in game
-                        boolean isMyTurn = myRole.equals(updatedGame.currentPlayer);
-                        activity.setMyTurn(isMyTurn);
-                        lastIsMyTurn = isMyTurn;
-
-                        // Now start listening for changes
-                        listenToGame(gameId);
-
-                        // Start heartbeat
-                        startPlayerHeartbeat();
-
-                        // Update UI
-                        activity.runOnUiThread(() -> {
-                            activity.updateBoardState();
-                            activity.updateDiceDisplay();
-                            String message = "Joined game as Player " + myRole;
-                            if (updatedGame.pairPreserve) {
-                                message += " (continuing match)";
-                            }
-                            activity.showToast(message);
-                        });
-                    }
-                });
+                joinClaimedGame(claim[0], "X".equals(claim[1]) ? "O" : "X", next);
             }
         });
     }
 
-    private void performJoinGameTransaction(String gameId) {
-        DatabaseReference gameRef = dbRef.child("games").child(gameId);
-        gameRef.runTransaction(new Transaction.Handler() {
+    // The lobby entry can outlive its game (the creator left, or another client joined it directly),
+    // so joining only commits while the game still waits for its second player, and for a rematch
+    // only if that player is us; otherwise runs ifUnavailable
+    private void joinClaimedGame(String gameId, String myRole, Runnable ifUnavailable) {
+        Log.d("FirebaseManager", "Claimed game " + gameId + ", joining as: " + myRole);
+        final boolean[] joined = new boolean[2]; // joined, and whether it continues a match
+        dbRef.child("games").child(gameId).runTransaction(new Transaction.Handler() {
             @NonNull
             @Override
-            public Transaction.Result doTransaction(@NonNull MutableData mutableData) {
-                try {
-                    GameManager game = mutableData.getValue(GameManager.class);
-                    if (game == null || !"waiting".equals(game.status) || game.players.size() >= 2) {
-                        return Transaction.abort();
-                    }
-
-                    // Update game status to playing
-                    game.status = "playing";
-
-                    // Always join as player O when joining another player's game
-                    game.players.put(playerId, "O");
-
-                    // Ensure we keep the creator's move if they made one
-                    if (game.board == null) {
-                        game.board = new HashMap<>();
-                    }
-
-                    // Add last active timestamps
-                    if (game.playerTimestamps == null) {
-                        game.playerTimestamps = new HashMap<>();
-                    }
-
-                    // Set timestamp for current player
-                    game.playerTimestamps.put(playerId, ServerValue.TIMESTAMP);
-
-                    // Find player X's ID and update their timestamp too
-                    for (Map.Entry<String, String> entry : game.players.entrySet()) {
-                        if ("X".equals(entry.getValue()) && !playerId.equals(entry.getKey())) {
-                            game.playerTimestamps.put(entry.getKey(), ServerValue.TIMESTAMP);
-                            break;
-                        }
-                    }
-
-                    mutableData.setValue(game);
-                    return Transaction.success(mutableData);
-                } catch (Exception e) {
-                    Log.e("FirebaseManager", "Join transaction error: " + e.getMessage(), e);
+            public Transaction.Result doTransaction(@NonNull MutableData gameData) {
+                joined[0] = false;
+                // Empty local cache on the first run: commit nothing so the server reruns us on its copy
+                if (gameData.getValue() == null) return Transaction.success(gameData);
+                String status = gameData.child("status").getValue(String.class);
+                String target = gameData.child("targetOpponentId").getValue(String.class);
+                MutableData players = gameData.child("players");
+                if (!"waiting".equals(status) || players.getChildrenCount() != 1
+                        || players.hasChild(playerId) || (target != null && !target.equals(playerId))) {
                     return Transaction.abort();
                 }
+                players.child(playerId).setValue(myRole);
+                gameData.child("playerTimestamps").child(playerId).setValue(ServerValue.TIMESTAMP);
+                gameData.child("status").setValue("playing");
+                // The pairing is complete; pairPreserve stays so the next game keeps it too
+                gameData.child("targetOpponentId").setValue(null);
+                joined[0] = true;
+                joined[1] = Boolean.TRUE.equals(gameData.child("pairPreserve").getValue(Boolean.class));
+                return Transaction.success(gameData);
             }
 
             @Override
             public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
-                if (error != null) {
-                    Log.e("FirebaseManager", "Transaction failed: " + error.getMessage());
-                    activity.runOnUiThread(() -> activity.showToast("Failed to join game: " + error.getMessage()));
-                    findOrCreateGame();
+                if (error != null || !committed || !joined[0]) {
+                    Log.w("FirebaseManager", "Claimed game " + gameId + " is no longer joinable: "
+                            + (error != null ? error.getMessage() : "aborted"));
+                    ifUnavailable.run();
                     return;
                 }
+                FirebaseManager.this.gameId = gameId;
+                isPlayerX = "X".equals(myRole);
 
-                if (committed) {
-                    Log.d("FirebaseManager", "Successfully joined game: " + gameId);
-
-                    // Critical fix: Get a fresh snapshot after successful join
-                    gameRef.get().addOnSuccessListener(dataSnapshot -> {
-                        GameManager gameState = dataSnapshot.getValue(GameManager.class);
-                        if (gameState != null) {
-                            boolean foundMyPlayer = false;
-
-                            // Find my player assignment (X or O)
-                            for (Map.Entry<String, String> entry : gameState.players.entrySet()) {
-                                if (entry.getKey().equals(playerId)) {
-                                    isPlayerX = "X".equals(entry.getValue());
-                                    foundMyPlayer = true;
-                                    Log.d("FirebaseManager", "My role confirmed as: " + (isPlayerX ? "X" : "O"));
-                                    break;
-                                }
-                            }
-
-                            if (!foundMyPlayer) {
-                                Log.e("FirebaseManager", "Could not find player in game after joining!");
-                            }
-
-                            // Now update the UI with correct state
-                            activity.runOnUiThread(() -> {
-                                boolean isMyTurn = (isPlayerX && "X".equals(gameState.currentPlayer)) ||
-                                        (!isPlayerX && "O".equals(gameState.currentPlayer));
-
-                                activity.setMyTurn(isMyTurn);
-                                lastIsMyTurn = isMyTurn;
-
-                                // Sync engine state with Firebase
-                                gameEngine.syncWithRemote(gameState);
-                                activity.updateBoardState();
-                                activity.updateDiceDisplay();
+                // X always moves first in a new game
+                activity.setMyTurn(isPlayerX);
+                lastIsMyTurn = isPlayerX;
 
-                                activity.showToast("Joined game!");
-                            });
+                // Now start listening for changes
+                listenToGame(gameId);
 
-                            // Now start listening for changes
-                            listenToGame(gameId);
+                // Publish presence and watch the opponent's
+                startPresence();
 
-                            // Start heartbeat
-                            startPlayerHeartbeat();
-                        } else {
-                            Log.e("FirebaseManager", "Failed to get game data after joining");
-                            activity.runOnUiThread(() -> activity.showToast("Error: Could not get game data"));
-                        }
-                    });
-                } else {
-                    Log.w("FirebaseManager", "Transaction aborted, game full or invalid");
-                    activity.runOnUiThread(() -> activity.showToast("Game unavailable, trying another..."));
-                    findOrCreateGame();
-                }
+                String message = "Joined game as Player " + myRole + (joined[1] ? " (continuing match)" : "");
+                activity.runOnUiThread(() -> {
+                    activity.updateBoardState();
+                    activity.updateDiceDisplay();
+                    activity.showToast(message);
+                });
             }
         });
     }
 
-    private void findPairedGame(String opponentId) {
-        Log.d("FirebaseManager", "Looking for a paired game with opponent: " + opponentId);
-
-        // Look for games waiting for this specific player
-        dbRef.child("games")
-                .orderByChild("targetOpponentId")
-                .equalTo(playerId)
-                .limitToFirst(1)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        DataSnapshot snapshot = task.getResult();
-                        if (snapshot.exists()) {
-                            boolean gameFound = false;
-                            for (DataSnapshot gameSnapshot : snapshot.getChildren()) {
-                                GameManager gameData = gameSnapshot.getValue(GameManager.class);
-                                if (gameData != null &&
-                                        "waiting".equals(gameData.status) &&
-                                        gameData.pairPreserve &&
-                                        gameData.targetOpponentId != null &&
-                                        gameData.targetOpponentId.equals(playerId)) {
-
-                                    String gameId = gameSnapshot.getKey();
-                                    Log.d("FirebaseManager", "Found a game waiting for me: " + gameId);
-                                    joinGame(gameId);
-                                    gameFound = true;
-                                    break;
-                                }
-                            }
+    // Queues our new game, for anyone or only for target; the entry goes away if we disconnect
+    // before it is claimed
+    private void enqueueInLobby(String gameId, String myRole, String target) {
+        leaveLobby();
+        int shard = shardFor(target != null ? target : gameId);
+        lobbyEntryRef = dbRef.child("lobby").child(String.valueOf(shard)).child(gameId);
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("creator", playerId);
+        entry.put("role", myRole);
+        if (target != null) {
+            entry.put("target", target);
+        }
+        entry.put("createdAt", ServerValue.TIMESTAMP);
+        lobbyEntryRef.onDisconnect().removeValue();
+        lobbyEntryRef.setValue(entry);
+    }
 
-                            if (!gameFound) {
-                                // No paired game found, try regular matchmaking
-                                findOrCreateGame();
-                            }
-                        } else {
-                            // No paired games waiting for this player
-                            findOrCreateGame();
-                        }
-                    } else {
-                        Log.e("FirebaseManager", "Failed to find paired game: " + task.getException().getMessage());
-                        findOrCreateGame();
-                    }
-                });
+    private void leaveLobby() {
+        if (lobbyEntryRef != null) {
+            lobbyEntryRef.onDisconnect().cancel();
+            lobbyEntryRef.removeValue();
+            lobbyEntryRef = null;
+        }
     }
 
     public void createGame() {
@@ -479,18 +257,15 @@ public class FirebaseManager {
         gameData.put("playerXScore", gameEngine.getPlayerXScore());
         gameData.put("playerOScore", gameEngine.getPlayerOScore());
 
-        // Initialize empty dice array
-        Map<String, Integer> diceMap = new HashMap<>();
-        for (int i = 0; i < 5; i++) {
-            diceMap.put(String.valueOf(i), 0);
-        }
-        gameData.put("dice", diceMap);
+        // Empty board and unrolled dice, in the compact layout
+        putBoardAndDice(gameData, 0, 0, 0);
+        gameData.put("moveSeq", 0);
 
         // CRITICAL ROLE ASSIGNMENT LOGIC - determines who should be X/O
         boolean shouldBePlayerX = true; // Default for new games
 
         // Winner goes first as X, loser goes second as O
-        if (previousWinner != null && !previousWinner.equals("Draw")) {
+        if (previousWinner != null && !previousWinner.equals(GameManager.DRAW)) {
             if ((wasPlayerX && "X".equals(previousWinner)) || (!wasPlayerX && "O".equals(previousWinner))) {
                 // If I won my last game, I should be X
                 shouldBePlayerX = true;
@@ -514,10 +289,6 @@ public class FirebaseManager {
         playerTimestamps.put(playerId, ServerValue.TIMESTAMP);
         gameData.put("playerTimestamps", playerTimestamps);
 
-        // Initialize empty board
-        Map<String, String> boardMap = new HashMap<>();
-        gameData.put("board", boardMap);
-
         // Add creator info for synchronization
         gameData.put("gameCreatedBy", playerId);
 
@@ -531,6 +302,7 @@ public class FirebaseManager {
         newGameRef.setValue(gameData).addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 Log.d("FirebaseManager", "Game created: " + gameId);
+                enqueueInLobby(gameId, myRole, null);
 
                 // Get a fresh copy of the game state to ensure we have latest data
                 newGameRef.get().addOnSuccessListener(dataSnapshot -> {
@@ -547,8 +319,8 @@ public class FirebaseManager {
                         // Now start listening for changes
                         listenToGame(gameId);
 
-                        // Start heartbeat
-                        startPlayerHeartbeat();
+                        // Publish presence and watch the opponent's
+                        startPresence();
 
                         // Update UI
                         activity.runOnUiThread(() -> {
@@ -569,111 +341,76 @@ public class FirebaseManager {
         });
     }
 
-    private void findGameByWinner(String previousWinner) {
-        dbRef.child("games")
-                .orderByChild("status")
-                .equalTo("waiting")
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        DataSnapshot snapshot = task.getResult();
-                        if (snapshot.exists()) {
-                            boolean gameFound = false;
-                            for (DataSnapshot gameSnapshot : snapshot.getChildren()) {
-                                // Check if this game was created by a player who won with previousWinner
-                                String winnerInGame = gameSnapshot.child("previousWinner").getValue(String.class);
-
-                                // Look for games where previous winner is set correctly
-                                if (previousWinner != null && previousWinner.equals(winnerInGame)) {
-                                    String gameId = gameSnapshot.getKey();
-                                    joinGame(gameId);
-                                    gameFound = true;
-                                    break;
-                                }
-                            }
-                            if (!gameFound) {
-                                // No game found created by winner, create a new game as player X
-                                isPlayerX = true;
-                                createGame(null, true);
-                            }
-                        } else {
-                            // No waiting games at all, create a new one as player X
-                            isPlayerX = true;
-                            createGame(null, true);
-                        }
-                    } else {
-                        Log.e("FirebaseManager", "Failed to find game by winner: " + task.getException().getMessage());
-                        activity.runOnUiThread(() -> activity.showToast("Failed to find game: " + task.getException().getMessage()));
-                        // Create a new game as fallback
-                        isPlayerX = true;
-                        createGame(null, true);
-                    }
-                });
-    }
-
-    // Heartbeat mechanism to track player activity
-    private void startPlayerHeartbeat() {
+    // Publishes presence/<playerId> for this game: true now and whenever the connection comes back,
+    // and the server writes the disconnect time itself if we drop. The opponent's entry reaches us
+    // through the game listener, so watching it costs no reads
+    private void startPresence() {
         if (gameId == null) return;
+        stopPresence();
 
-        // Update player timestamp every 30 seconds
-        new Thread(() -> {
-            while (gameId != null && !isLeavingGame) {
-                try {
-                    // Update timestamp
-                    dbRef.child("games").child(gameId).child("playerTimestamps").child(playerId)
-                            .setValue(ServerValue.TIMESTAMP);
-
-                    // Check for inactive opponent
-                    checkForInactiveOpponent();
-
-                    // Sleep for 30 seconds
-                    Thread.sleep(30000);
-                } catch (InterruptedException e) {
-                    Log.e("FirebaseManager", "Heartbeat interrupted", e);
-                    break;
-                } catch (Exception e) {
-                    Log.e("FirebaseManager", "Error in heartbeat", e);
+        presenceRef = dbRef.child("games").child(gameId).child("presence").child(playerId);
+        DatabaseReference ref = presenceRef;
+        connectedListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (Boolean.TRUE.equals(snapshot.getValue(Boolean.class))) {
+                    ref.onDisconnect().setValue(ServerValue.TIMESTAMP);
+                    ref.setValue(true);
                 }
             }
-        }).start();
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("FirebaseManager", "Connection state listener cancelled: " + error.getMessage());
+            }
+        };
+        connectedRef.addValueEventListener(connectedListener);
     }
 
-    private void checkForInactiveOpponent() {
-        if (gameId == null) return;
+    private void stopPresence() {
+        if (opponentGoneCheck != null) {
+            opponentGoneCheck.cancel(false);
+            opponentGoneCheck = null;
+        }
+        if (connectedListener != null) {
+            connectedRef.removeEventListener(connectedListener);
+            connectedListener = null;
+        }
+        if (presenceRef != null) {
+            presenceRef.onDisconnect().cancel();
+            presenceRef.setValue(ServerValue.TIMESTAMP);
+            presenceRef = null;
+        }
+    }
 
-        // Get timestamps of all players
-        dbRef.child("games").child(gameId).child("playerTimestamps").get().addOnCompleteListener(task -> {
-            if (!task.isSuccessful() || task.getResult() == null) return;
-
-            DataSnapshot snapshot = task.getResult();
-            long currentTime = System.currentTimeMillis();
-
-            // First find opponents and check timestamps
-            for (DataSnapshot playerSnapshot : snapshot.getChildren()) {
-                String playerKey = playerSnapshot.getKey();
-                if (playerKey != null && !playerKey.equals(playerId)) {
-                    Long lastSeen = playerSnapshot.getValue(Long.class);
-                    if (lastSeen != null) {
-                        // Store these as final variables for the lambda
-                        final String opponentId = playerKey;
-                        final long opponentTimestamp = lastSeen;
-
-                        // Only mark as inactive if 3 minutes have passed (180000ms)
-                        if (currentTime - opponentTimestamp > 180000) {
-                            // Double-check game status first to avoid false reports
-                            dbRef.child("games").child(gameId).child("status").get()
-                                    .addOnSuccessListener(statusSnapshot -> {
-                                        String status = statusSnapshot.getValue(String.class);
-                                        if ("playing".equals(status)) {
-                                            handleInactiveOpponent(opponentId);
-                                        }
-                                    });
-                        }
-                        break; // Only check the first opponent found
-                    }
-                }
+    // Called when the presence entries change. A disconnected opponent gets a short grace period
+    // to reconnect before the game is ended
+    private void checkOpponentPresence() {
+        String opponentId = findOpponentId();
+        if (opponentId == null || !Boolean.FALSE.equals(remoteState.presenceOf(opponentId))) {
+            if (opponentGoneCheck != null) {
+                opponentGoneCheck.cancel(false);
+                opponentGoneCheck = null;
             }
-        });
+            return;
+        }
+        if (opponentGoneCheck != null) return;
+        String checkedGame = gameId;
+        opponentGoneCheck = LIVENESS.schedule(() -> mainHandler.post(() -> {
+            opponentGoneCheck = null;
+            if (checkedGame != null && checkedGame.equals(gameId) && !isLeavingGame
+                    && Boolean.FALSE.equals(remoteState.presenceOf(opponentId))
+                    && "playing".equals(remoteState.status)) {
+                handleInactiveOpponent(opponentId);
+            }
+        }), RECONNECT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private String findOpponentId() {
+        for (String id : remoteState.getPlayers().keySet()) {
+            if (!id.equals(playerId)) return id;
+        }
+        return null;
     }
 
     private void handleInactiveOpponent(String inactivePlayerId) {
@@ -692,7 +429,7 @@ public class FirebaseManager {
     private void updatePlayerRole(GameManager gameState) {
         // Determine player symbol by player ID
         String mySymbol = null;
-        for (Map.Entry<String, String> entry : gameState.players.entrySet()) {
+        for (Map.Entry<String, String> entry : gameState.getPlayers().entrySet()) {
             if (entry.getKey().equals(playerId)) {
                 mySymbol = entry.getValue();
                 break;
@@ -718,99 +455,29 @@ public class FirebaseManager {
         }
 
         gameRef = dbRef.child("games").child(gameId);
-        gameListener = new ValueEventListener() {
+        writeBatcher.setTarget(gameRef, playerId);
+        moveSeq = -1;
+        remoteState = new GameManager();
+        pendingFields = 0;
+        // One event per changed child of the game node, so a write only touches the fields it changed
+        gameListener = new ChildEventListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                try {
-                    Log.d("FirebaseManager", "Received snapshot: " + snapshot.getValue());
-                    GameManager gameState = new GameManager();
-
-                    // Parse all the basic properties from snapshot
-                    gameState.currentPlayer = snapshot.child("currentPlayer").getValue(String.class);
-                    gameState.status = snapshot.child("status").getValue(String.class);
-                    gameState.currentCombo = snapshot.child("currentCombo").getValue(String.class);
-                    gameState.gameCreatedBy = snapshot.child("gameCreatedBy").getValue(String.class);
-                    gameState.previousWinner = snapshot.child("previousWinner").getValue(String.class);
-
-                    // Handle scores
-                    if (snapshot.hasChild("playerXScore")) {
-                        gameState.playerXScore = snapshot.child("playerXScore").getValue(Integer.class);
-                    }
-                    if (snapshot.hasChild("playerOScore")) {
-                        gameState.playerOScore = snapshot.child("playerOScore").getValue(Integer.class);
-                    }
-
-                    // Parse board, players, dice, etc.
-                    try {
-                        Map<String, String> board = new HashMap<>();
-                        for (DataSnapshot child : snapshot.child("board").getChildren()) {
-                            String key = child.getKey();
-                            String value = child.getValue(String.class);
-                            if (key != null && value != null) {
-                                board.put(key, value);
-                            }
-                        }
-                        gameState.board = board;
-                    } catch (Exception e) {
-                        Log.e("FirebaseManager", "Error parsing board data", e);
-                        gameState.board = new HashMap<>();
-                    }
-
-                    try {
-                        Map<String, String> players = new HashMap<>();
-                        for (DataSnapshot child : snapshot.child("players").getChildren()) {
-                            String key = child.getKey();
-                            String value = child.getValue(String.class);
-                            if (key != null && value != null) {
-                                players.put(key, value);
-                            }
-                        }
-                        gameState.players = players;
-                    } catch (Exception e) {
-                        Log.e("FirebaseManager", "Error parsing players data", e);
-                        gameState.players = new HashMap<>();
-                    }
-
-                    // Parse dice data
-                    try {
-                        gameState.dice = snapshot.child("dice").getValue();
-                    } catch (Exception e) {
-                        // Set default dice values
-                        Map<String, Integer> defaultDice = new HashMap<>();
-                        for (int i = 0; i < 5; i++) {
-                            defaultDice.put(String.valueOf(i), 0);
-                        }
-                        gameState.dice = defaultDice;
-                    }
-
-                    // Handle player left state
-                    if ("player_left".equals(gameState.status)) {
-                        String leftPlayer = snapshot.child("leftPlayer").getValue(String.class);
-                        if (leftPlayer != null && !leftPlayer.equals(playerId)) {
-                            activity.runOnUiThread(() -> {
-                                activity.showToast("Opponent left the game.");
-                            });
-                        }
-                    }
+            public void onChildAdded(@NonNull DataSnapshot child, @Nullable String previousChildName) {
+                routeChild(child, false);
+            }
 
-                    // Update UI on main thread
-                    activity.runOnUiThread(() -> {
-                        // First update player role
-                        updatePlayerRole(gameState);
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot child, @Nullable String previousChildName) {
+                routeChild(child, false);
+            }
 
-                        // CRITICAL FIX: Don't update turn state if game is over or player left
-                        if ("playing".equals(gameState.status)) {
-                            updateTurnStatus(gameState);
-                        }
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot child) {
+                routeChild(child, true);
+            }
 
-                        // Update game state
-                        updateLocalGame(gameState);
-                    });
-                } catch (Exception e) {
-                    Log.e("FirebaseManager", "Error parsing game data", e);
-                    e.printStackTrace();
-                    activity.runOnUiThread(() -> activity.showToast("Error parsing game data: " + e.getMessage()));
-                }
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot child, @Nullable String previousChildName) {
             }
 
             @Override
@@ -820,13 +487,71 @@ public class FirebaseManager {
             }
         };
 
-        gameRef.addValueEventListener(gameListener);
+        gameRef.addChildEventListener(gameListener);
+    }
+
+    private void routeChild(DataSnapshot child, boolean removed) {
+        try {
+            int field = remoteState.applyChild(child, removed);
+            if (field == GameManager.FIELD_OTHER) {
+                return; // Nothing on screen depends on these, activity timestamps included
+            }
+            // A multi-path update arrives as one event per child; apply them together once they are all in
+            pendingFields |= field;
+            if (!flushPosted) {
+                flushPosted = true;
+                mainHandler.post(this::applyPendingFields);
+            }
+        } catch (Exception e) {
+            Log.e("FirebaseManager", "Error parsing game field " + child.getKey(), e);
+        }
     }
 
-    private void updateLocalGame(GameManager remoteState) {
-        if (remoteState.board == null) {
-            remoteState.board = new HashMap<>();
-            Log.w("FirebaseManager", "Remote board was null, initialized to empty map");
+    private void applyPendingFields() {
+        int fields = pendingFields;
+        pendingFields = 0;
+        flushPosted = false;
+        if (gameListener == null) {
+            return; // Left the game since these arrived
+        }
+
+        if ((fields & GameManager.FIELD_PLAYERS) != 0) {
+            updatePlayerRole(remoteState);
+        }
+        if ((fields & GameManager.FIELD_STATUS) != 0 && !"waiting".equals(remoteState.status)) {
+            leaveLobby();
+        }
+        if ((fields & (GameManager.FIELD_PRESENCE | GameManager.FIELD_PLAYERS)) != 0) {
+            checkOpponentPresence();
+        }
+        if ((fields & GameManager.FIELD_STATUS) != 0 && "player_left".equals(remoteState.status)
+                && remoteState.leftPlayer != null && !remoteState.leftPlayer.equals(playerId)) {
+            activity.showToast("Opponent left the game.");
+        }
+        // CRITICAL FIX: Don't update turn state if game is over or player left
+        if ((fields & (GameManager.FIELD_TURN | GameManager.FIELD_STATUS | GameManager.FIELD_PLAYERS)) != 0
+                && "playing".equals(remoteState.status)) {
+            updateTurnStatus(remoteState);
+        }
+
+        if ((fields & (GameManager.FIELD_BOARD | GameManager.FIELD_TURN | GameManager.FIELD_STATUS)) != 0) {
+            updateLocalGame(remoteState, (fields & GameManager.FIELD_STATUS) != 0);
+        } else if ((fields & GameManager.FIELD_DICE) != 0) {
+            gameEngine.syncDiceWithRemote(remoteState);
+            activity.updateDiceDisplay();
+            activity.updateBoardState();
+        }
+        if ((fields & GameManager.FIELD_SCORES) != 0) {
+            gameEngine.setPlayerXScore(remoteState.playerXScore);
+            gameEngine.setPlayerOScore(remoteState.playerOScore);
+            activity.updateScoreDisplay();
+        }
+    }
+
+    private void updateLocalGame(GameManager remoteState, boolean statusChanged) {
+        // A missing board reads as empty; the mirror is left alone so later cells updates still apply
+        if (remoteState.board == null && remoteState.cells == null) {
+            Log.w("FirebaseManager", "Remote board was null, treating it as empty");
         }
 
         // Update scores if they exist in remote state
@@ -834,14 +559,18 @@ public class FirebaseManager {
         gameEngine.setPlayerXScore(remoteState.playerXScore);
         gameEngine.setPlayerOScore(remoteState.playerOScore);
 
-        gameEngine.syncWithRemote(remoteState);
+        if (!applyMoveDelta(remoteState)) {
+            gameEngine.syncWithRemote(remoteState);
+        }
+        moveSeq = Math.max(moveSeq, remoteState.moveSeq);
+        activity.updateDiceDisplay();
         activity.updateBoardState();
 
-        if ("game_over".equals(remoteState.status)) {
-            String winner = gameEngine.getWinner();
+        if (statusChanged && "game_over".equals(remoteState.status)) {
+            String winner = StateCodec.encodePlayer(gameEngine.getWinner());
             String winnerMessage = "Game Over: ";
 
-            if (winner != null && !"Draw".equals(winner)) {
+            if (winner != null) {
                 winnerMessage += "Player " + winner + " wins!";
 
                 // Update previousWinner field in Firebase
@@ -855,12 +584,29 @@ public class FirebaseManager {
         }
     }
 
+    // Applies the opponent's move on its own when it directly follows the last one we saw.
+    // Anything else (the first snapshot, a missed move, our own echo) goes through the full board
+    private boolean applyMoveDelta(GameManager remoteState) {
+        Player next = remoteState.getCurrentPlayerValue();
+        if (remoteState.lastMove == null || remoteState.moveSeq != moveSeq + 1
+                || next == null || !remoteState.isPlayingStatus()) {
+            return false;
+        }
+        if (!gameEngine.applyRemoteMove(remoteState.lastMove, next.opponent())) {
+            Log.w("FirebaseManager", "Move " + remoteState.moveSeq + " does not fit the local board, resyncing");
+            return false;
+        }
+        // The packed board comes in the same update; if it disagrees, it wins
+        return remoteState.getBoardMask(Player.X) == gameEngine.getBoardMask(Player.X)
+                && remoteState.getBoardMask(Player.O) == gameEngine.getBoardMask(Player.O);
+    }
+
     private void updateTurnStatus(GameManager gameState) {
         String currentPlayer = gameState.currentPlayer;
 
         // Determine player symbol by player ID
         String mySymbol = null;
-        for (Map.Entry<String, String> entry : gameState.players.entrySet()) {
+        for (Map.Entry<String, String> entry : gameState.getPlayers().entrySet()) {
             if (entry.getKey().equals(playerId)) {
                 mySymbol = entry.getValue();
                 break;
@@ -892,63 +638,65 @@ public class FirebaseManager {
 
     public void sendMove(int row, int col) {
         if (gameId != null) {
-            Map<String, String> updatedBoard = gameEngine.getBoardAsMap();
+            int xMask = gameEngine.getBoardMask(Player.X);
+            int oMask = gameEngine.getBoardMask(Player.O);
             if (row >= 0 && col >= 0) {
-                updatedBoard.put(row + "_" + col, gameEngine.getCurrentPlayer());
+                if (gameEngine.getCurrentPlayer() == Player.X) {
+                    xMask |= 1 << Bitboard.cell(row, col);
+                } else {
+                    oMask |= 1 << Bitboard.cell(row, col);
+                }
             }
-            Log.d("FirebaseManager", "Sending move: row=" + row + ", col=" + col + ", board=" + updatedBoard);
+            int cells = StateCodec.packBoard(xMask, oMask);
+            Log.d("FirebaseManager", "Sending move: row=" + row + ", col=" + col + ", cells=" + Integer.toHexString(cells));
 
+            // One atomic update: the move and its sequence number and the turn handover
             Map<String, Object> updates = new HashMap<>();
-            updates.put("board", updatedBoard);
-            updates.put("currentPlayer", gameEngine.getCurrentPlayer().equals("X") ? "O" : "X");
-
-            Map<String, Integer> diceMap = new HashMap<>();
-            for (int i = 0; i < 5; i++) {
-                diceMap.put(String.valueOf(i), 0);
-            }
-            updates.put("dice", diceMap);
-
+            updates.put("lastMove", row >= 0 && col >= 0 ? Bitboard.cell(row, col) : -1);
+            updates.put("moveSeq", ++moveSeq);
+            putBoardAndDice(updates, cells, 0, 0);
+            updates.put("currentPlayer", StateCodec.encodePlayer(gameEngine.getCurrentPlayer().opponent()));
             updates.put("currentCombo", "");
+            lastPackedDice = 0;
 
-            // Update player timestamp
-            dbRef.child("games").child(gameId).child("playerTimestamps").child(playerId)
-                    .setValue(ServerValue.TIMESTAMP);
-
-            dbRef.child("games").child(gameId).updateChildren(updates)
-                    .addOnSuccessListener(aVoid -> Log.d("FirebaseManager", "Move sent successfully"))
-                    .addOnFailureListener(e -> {
-                        Log.e("FirebaseManager", "Failed to send move: " + e.getMessage());
-                        activity.runOnUiThread(() -> activity.showToast("Failed to send move: " + e.getMessage()));
-                    });
+            // Goes out at once, together with any dice taps still waiting and our activity timestamp
+            Task<Void> task = writeBatcher.queueAndFlush(updates, 1);
+            if (task != null) {
+                task.addOnSuccessListener(aVoid -> Log.d("FirebaseManager", "Move sent successfully"))
+                        .addOnFailureListener(e -> {
+                            Log.e("FirebaseManager", "Failed to send move: " + e.getMessage());
+                            activity.runOnUiThread(() -> activity.showToast("Failed to send move: " + e.getMessage()));
+                        });
+            }
         }
     }
 
-    public void updateDiceState(List<Integer> dice, String currentCombo) {
+    public void updateDiceState(int[] dice, int keptMask, Combo currentCombo) {
         if (gameId != null) {
             try {
                 Map<String, Object> updates = new HashMap<>();
 
-                // Convert List to Map for Firebase, using Object instead of Integer
-                Map<String, Object> diceMap = new HashMap<>();
-                for (int i = 0; i < dice.size(); i++) {
-                    diceMap.put(String.valueOf(i), dice.get(i));
-                }
-
-                updates.put("dice", diceMap);
-                updates.put("currentCombo", currentCombo != null ? currentCombo : "");
-
-                // Update player timestamp
-                dbRef.child("games").child(gameId).child("playerTimestamps").child(playerId)
-                        .setValue(ServerValue.TIMESTAMP);
-
-                dbRef.child("games").child(gameId).updateChildren(updates)
-                        .addOnSuccessListener(aVoid ->
-                                Log.d("FirebaseManager", "Dice state updated successfully"))
-                        .addOnFailureListener(e -> {
+                // The board is unchanged mid-turn, so only the dice fields go out
+                updates.put("packedDice", StateCodec.packDice(dice));
+                updates.put("kept", keptMask);
+                updates.put("dice", null);
+                updates.put("currentCombo", StateCodec.encodeCombo(currentCombo));
+
+                // A new roll goes out at once; keep toggles wait for the batch window
+                int packedDice = StateCodec.packDice(dice);
+                if (packedDice != lastPackedDice) {
+                    lastPackedDice = packedDice;
+                    Task<Void> task = writeBatcher.queueAndFlush(updates, 2);
+                    if (task != null) {
+                        task.addOnFailureListener(e -> {
                             Log.e("FirebaseManager", "Failed to update dice: " + e.getMessage(), e);
                             activity.runOnUiThread(() ->
                                     activity.showToast("Failed to update dice: " + e.getMessage()));
                         });
+                    }
+                } else {
+                    writeBatcher.queue(updates, 2);
+                }
             } catch (Exception e) {
                 Log.e("FirebaseManager", "Exception updating dice state", e);
                 activity.runOnUiThread(() ->
@@ -957,6 +705,24 @@ public class FirebaseManager {
         }
     }
 
+    // Writes the compact board and dice, and removes any legacy maps so readers cannot mix the two
+    private void putBoardAndDice(Map<String, Object> updates, int cells, int packedDice, int keptMask) {
+        updates.put("cells", cells);
+        updates.put("packedDice", packedDice);
+        updates.put("kept", keptMask);
+        updates.put("board", null);
+        updates.put("dice", null);
+    }
+
+    // Writes the batcher avoided so far, against the separate field and heartbeat writes they replace
+    public int getWritesSaved() {
+        return writeBatcher.getWritesSaved();
+    }
+
+    public int getRequestedWrites() {
+        return writeBatcher.getRequestedWrites();
+    }
+
     public void updateScores(int playerXScore, int playerOScore) {
         if (gameId == null) return;
 
@@ -964,15 +730,8 @@ public class FirebaseManager {
         updates.put("playerXScore", playerXScore);
         updates.put("playerOScore", playerOScore);
 
-        // Update scores in Firebase
-        dbRef.child("games").child(gameId).updateChildren(updates)
-                .addOnSuccessListener(aVoid ->
-                        Log.d("FirebaseManager", "Scores updated successfully"))
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseManager", "Failed to update scores: " + e.getMessage());
-                    activity.runOnUiThread(() ->
-                            activity.showToast("Failed to update scores: " + e.getMessage()));
-                });
+        // Usually followed by endGame, which sends it in the same write
+        writeBatcher.queue(updates, 1);
     }
 
     public void resetAndCreateNewGame() {
@@ -982,7 +741,7 @@ public class FirebaseManager {
         }
 
         // Store the current game state before ending
-        String previousWinner = gameEngine.getWinner();
+        String previousWinner = StateCodec.encodeWinner(gameEngine.getWinner(), gameEngine.isDraw());
         boolean wasPlayerX = isPlayerX;
 
         // Store opponent information to try to rejoin the same opponent later
@@ -1027,6 +786,8 @@ public class FirebaseManager {
 
                     // Cleanup of old game
                     String oldGameId = gameId;
+                    stopPresence();
+                    leaveLobby();
                     gameId = null;
 
                     if (gameRef != null && gameListener != null) {
@@ -1049,43 +810,11 @@ public class FirebaseManager {
                         // Ignore
                     }
 
-                    // First, check if our opponent has already created a game waiting for us
+                    // Join the rematch our opponent may already have queued for us, or queue our own.
+                    // It would sit in our shard, and the join transaction settles a race with them
                     if (opponentId != null) {
-                        // Look for a waiting game created by our opponent
-                        dbRef.child("games")
-                                .orderByChild("status")
-                                .equalTo("waiting")
-                                .get()
-                                .addOnSuccessListener(snapshot -> {
-                                    boolean foundOpponentGame = false;
-
-                                    for (DataSnapshot gameSnapshot : snapshot.getChildren()) {
-                                        GameManager gameData = gameSnapshot.getValue(GameManager.class);
-                                        if (gameData != null &&
-                                                gameData.gameCreatedBy != null &&
-                                                gameData.gameCreatedBy.equals(opponentId) &&
-                                                gameData.players != null &&
-                                                gameData.players.size() == 1 &&
-                                                gameData.pairPreserve) {
-
-                                            // Found a waiting game from our opponent! Join it
-                                            String newGameId = gameSnapshot.getKey();
-                                            Log.d("FirebaseManager", "Found opponent's waiting game: " + newGameId);
-                                            joinGame(newGameId);
-                                            foundOpponentGame = true;
-                                            break;
-                                        }
-                                    }
-
-                                    if (!foundOpponentGame) {
-                                        // No waiting game from opponent, create our own
-                                        createPairedGame(previousWinner, wasPlayerX, opponentId, oldGameId);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    // Failed to find game, create a new one anyway
-                                    createPairedGame(previousWinner, wasPlayerX, opponentId, oldGameId);
-                                });
+                        claimFromLobby(shardFor(playerId), 1, opponentId,
+                                () -> createPairedGame(previousWinner, wasPlayerX, opponentId, oldGameId));
                     } else {
                         // No opponent info, just create a regular new game
                         createGame(previousWinner, wasPlayerX);
@@ -1121,18 +850,15 @@ public class FirebaseManager {
         gameData.put("targetOpponentId", targetOpponentId);
         gameData.put("previousGameId", previousGameId);
 
-        // Initialize empty dice array
-        Map<String, Integer> diceMap = new HashMap<>();
-        for (int i = 0; i < 5; i++) {
-            diceMap.put(String.valueOf(i), 0);
-        }
-        gameData.put("dice", diceMap);
+        // Empty board and unrolled dice, in the compact layout
+        putBoardAndDice(gameData, 0, 0, 0);
+        gameData.put("moveSeq", 0);
 
         // CRITICAL ROLE ASSIGNMENT LOGIC - determines who should be X/O
         boolean shouldBePlayerX = true; // Default for new games
 
         // Winner goes first as X, loser goes second as O
-        if (previousWinner != null && !previousWinner.equals("Draw")) {
+        if (previousWinner != null && !previousWinner.equals(GameManager.DRAW)) {
             if ((wasPlayerX && "X".equals(previousWinner)) || (!wasPlayerX && "O".equals(previousWinner))) {
                 // If I won my last game, I should be X
                 shouldBePlayerX = true;
@@ -1156,10 +882,6 @@ public class FirebaseManager {
         playerTimestamps.put(playerId, ServerValue.TIMESTAMP);
         gameData.put("playerTimestamps", playerTimestamps);
 
-        // Initialize empty board
-        Map<String, String> boardMap = new HashMap<>();
-        gameData.put("board", boardMap);
-
         // Add creator info for synchronization
         gameData.put("gameCreatedBy", playerId);
 
@@ -1174,6 +896,7 @@ public class FirebaseManager {
         newGameRef.setValue(gameData).addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 Log.d("FirebaseManager", "Paired game created: " + gameId);
+                enqueueInLobby(gameId, myRole, targetOpponentId);
 
                 // Get a fresh copy of the game state to ensure we have latest data
                 newGameRef.get().addOnSuccessListener(dataSnapshot -> {
@@ -1190,8 +913,8 @@ public class FirebaseManager {
                         // Now start listening for changes
                         listenToGame(gameId);
 
-                        // Start heartbeat
-                        startPlayerHeartbeat();
+                        // Publish presence and watch the opponent's
+                        startPresence();
 
                         // Update UI
                         activity.runOnUiThread(() -> {
@@ -1216,7 +939,7 @@ public class FirebaseManager {
 
     public void endGame() {
         if (gameId != null) {
-            String winner = gameEngine.getWinner();
+            String winner = StateCodec.encodePlayer(gameEngine.getWinner());
             Log.d("FirebaseManager", "Ending game with scores - X: " + gameEngine.getPlayerXScore() + ", O: " + gameEngine.getPlayerOScore());
 
             Map<String, Object> updates = new HashMap<>();
@@ -1224,18 +947,17 @@ public class FirebaseManager {
             updates.put("playerXScore", gameEngine.getPlayerXScore());
             updates.put("playerOScore", gameEngine.getPlayerOScore());
 
-            if (winner != null && !"Draw".equals(winner)) {
+            if (winner != null) {
                 updates.put("previousWinner", winner);
             }
 
-            dbRef.child("games").child(gameId).updateChildren(updates)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d("FirebaseManager", "Game ended and scores updated successfully");
-                        // Force an immediate update to scores in case updateChildren callback happens before the listener
-                        updateScores(gameEngine.getPlayerXScore(), gameEngine.getPlayerOScore());
-                    })
-                    .addOnFailureListener(e ->
-                            Log.e("FirebaseManager", "Failed to end game: " + e.getMessage()));
+            Task<Void> task = writeBatcher.queueAndFlush(updates, 1);
+            if (task != null) {
+                task.addOnSuccessListener(aVoid ->
+                                Log.d("FirebaseManager", "Game ended and scores updated successfully"))
+                        .addOnFailureListener(e ->
+                                Log.e("FirebaseManager", "Failed to end game: " + e.getMessage()));
+            }
         }
     }
 
@@ -1257,6 +979,12 @@ public class FirebaseManager {
             gameToLeave.removeEventListener(gameListener);
             gameListener = null;
         }
+        stopPresence();
+        leaveLobby();
+        writeBatcher.flush();
+        writeBatcher.setTarget(null, null);
+        Log.d("FirebaseManager", "Writes saved by batching: " + writeBatcher.getWritesSaved()
+                + " of " + writeBatcher.getRequestedWrites());
 
         // Update the game status
         gameToLeave.updateChildren(updates)
@@ -1354,6 +1082,8 @@ public class FirebaseManager {
             gameRef.removeEventListener(gameListener);
             gameListener = null;
         }
+        stopPresence();
+        leaveLobby();
 
         // If we're in a game, mark that we've left
         if (gameId != null && !isLeavingGame) {
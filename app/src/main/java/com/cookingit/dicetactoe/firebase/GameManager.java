@@ -2,20 +2,46 @@ package com.cookingit.dicetactoe.firebase;
 
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceCombos;
+import com.cookingit.dicetactoe.Player;
+import com.cookingit.dicetactoe.RemoteGameState;
+import com.cookingit.dicetactoe.StateCodec;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Exclude;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class GameManager {
-    public Map<String, String> board;
+public class GameManager implements RemoteGameState {
+    public static final String STATUS_WAITING = "waiting";
+    public static final String STATUS_PLAYING = "playing";
+    public static final String STATUS_GAME_OVER = "game_over";
+    public static final String DRAW = StateCodec.DRAW;
+
+    // What a child of the game node holds, so listeners can route each change
+    public static final int FIELD_BOARD = 1;     // cells, board, lastMove, moveSeq
+    public static final int FIELD_DICE = 2;      // packedDice, dice, kept, currentCombo
+    public static final int FIELD_TURN = 4;      // currentPlayer
+    public static final int FIELD_STATUS = 8;    // status, leftPlayer
+    public static final int FIELD_SCORES = 16;
+    public static final int FIELD_PLAYERS = 32;
+    public static final int FIELD_PRESENCE = 64; // presence
+    public static final int FIELD_OTHER = 128;
+
+    public Map<String, String> board;   // Legacy layout, see cells
     public String currentPlayer;
     public String status;
-    public Object dice;  // Can be either Map or List
+    public Object dice;  // Can be either Map or List; legacy layout, see packedDice
     public String currentCombo;
     public Map<String, String> players;
     public Map<String, Object> playerTimestamps;
+    public Map<String, Object> presence;  // true while connected, else the server time of the disconnect
     public String leftPlayer;
     public Object createdAt;
     public int playerXScore;
@@ -29,6 +55,17 @@ public class GameManager {
     public String previousGameId;
     public String lastGameId;
 
+    // Compact layout (see StateCodec). Writers clear board and dice when they set these,
+    // so a legacy map next to them was written later by an older client and wins.
+    // Older clients only read the maps and cannot follow games written this way
+    public Integer cells;
+    public Integer packedDice;
+    public Integer kept;
+
+    // The last move as a delta: the cell placed (-1 for a pass) and its place in the game's sequence
+    public Integer lastMove;
+    public long moveSeq;
+
     public GameManager() {} // Required for Firebase
 
     public Map<String, String> getPlayers() {
@@ -109,8 +146,156 @@ public class GameManager {
         this.lastGameId = lastGameId;
     }
 
+    // Stores one child of the game node, or clears it if removed, and returns its FIELD_ group
+    public int applyChild(@NonNull DataSnapshot child, boolean removed) {
+        String key = child.getKey();
+        if (key == null) return FIELD_OTHER;
+        switch (key) {
+            case "cells":
+                cells = removed ? null : child.getValue(Integer.class);
+                return FIELD_BOARD;
+            case "board":
+                board = removed ? null : readStringMap(child);
+                return FIELD_BOARD;
+            case "lastMove":
+                lastMove = removed ? null : child.getValue(Integer.class);
+                return FIELD_BOARD;
+            case "moveSeq":
+                moveSeq = removed ? 0 : longValue(child);
+                return FIELD_BOARD;
+            case "packedDice":
+                packedDice = removed ? null : child.getValue(Integer.class);
+                return FIELD_DICE;
+            case "dice":
+                dice = removed ? null : child.getValue();
+                return FIELD_DICE;
+            case "kept":
+                kept = removed ? null : child.getValue(Integer.class);
+                return FIELD_DICE;
+            case "currentCombo":
+                currentCombo = removed ? null : child.getValue(String.class);
+                return FIELD_DICE;
+            case "currentPlayer":
+                currentPlayer = removed ? null : child.getValue(String.class);
+                return FIELD_TURN;
+            case "status":
+                status = removed ? null : child.getValue(String.class);
+                return FIELD_STATUS;
+            case "leftPlayer":
+                leftPlayer = removed ? null : child.getValue(String.class);
+                return FIELD_STATUS;
+            case "playerXScore":
+                playerXScore = removed ? 0 : (int) longValue(child);
+                return FIELD_SCORES;
+            case "playerOScore":
+                playerOScore = removed ? 0 : (int) longValue(child);
+                return FIELD_SCORES;
+            case "players":
+                players = removed ? null : readStringMap(child);
+                return FIELD_PLAYERS;
+            case "playerTimestamps":
+                playerTimestamps = removed ? null : readObjectMap(child);
+                return FIELD_OTHER;
+            case "presence":
+                presence = removed ? null : readObjectMap(child);
+                return FIELD_PRESENCE;
+            case "previousWinner":
+                previousWinner = removed ? null : child.getValue(String.class);
+                return FIELD_OTHER;
+            case "gameCreatedBy":
+                gameCreatedBy = removed ? null : child.getValue(String.class);
+                return FIELD_OTHER;
+            default:
+                return FIELD_OTHER;
+        }
+    }
+
+    private static Map<String, String> readStringMap(DataSnapshot snapshot) {
+        Map<String, String> map = new HashMap<>();
+        for (DataSnapshot child : snapshot.getChildren()) {
+            String value = child.getValue(String.class);
+            if (child.getKey() != null && value != null) {
+                map.put(child.getKey(), value);
+            }
+        }
+        return map;
+    }
+
+    private static Map<String, Object> readObjectMap(DataSnapshot snapshot) {
+        Map<String, Object> map = new HashMap<>();
+        for (DataSnapshot child : snapshot.getChildren()) {
+            if (child.getKey() != null) {
+                map.put(child.getKey(), child.getValue());
+            }
+        }
+        return map;
+    }
+
+    // TRUE if the player is connected, FALSE if they disconnected, null for clients that do not publish presence
+    public Boolean presenceOf(String playerId) {
+        Object value = presence != null ? presence.get(playerId) : null;
+        if (value == null) return null;
+        return Boolean.TRUE.equals(value);
+    }
+
+    private static long longValue(DataSnapshot snapshot) {
+        Long value = snapshot.getValue(Long.class);
+        return value != null ? value : 0;
+    }
+
+    // Typed views of the wire fields. @Exclude keeps them out of setValue(this)
+
+    @Exclude
+    @Override
+    public Player getCurrentPlayerValue() {
+        return Player.fromSymbol(currentPlayer);
+    }
+
+    @Exclude
+    @Override
+    public Combo getComboValue() {
+        return Combo.fromKey(currentCombo);
+    }
+
+    @Exclude
+    @Override
+    public boolean isPlayingStatus() {
+        return STATUS_PLAYING.equals(status);
+    }
+
+    @Exclude
+    @Override
+    public boolean isGameOverStatus() {
+        return STATUS_GAME_OVER.equals(status);
+    }
+
+    @Exclude
+    @Override
+    public int getBoardMask(Player player) {
+        if (board == null && cells != null) {
+            return StateCodec.unpackBoardMask(cells, player);
+        }
+        // Decodes the "row_col" -> "X"/"O" board map into one player's occupancy mask
+        return StateCodec.decodeBoardMask(board, player);
+    }
+
+    @Exclude
+    @Override
+    public int getKeptMaskValue() {
+        return dice == null && kept != null ? kept & 0xFF : -1;
+    }
+
     // Helper method to handle both dice formats
+    @Exclude
+    @Override
     public List<Integer> getDiceAsList() {
+        if (dice == null && packedDice != null) {
+            List<Integer> diceList = new ArrayList<>(DiceCombos.DICE);
+            for (int i = 0; i < DiceCombos.DICE; i++) {
+                diceList.add(StateCodec.unpackDie(packedDice, i));
+            }
+            return diceList;
+        }
         try {
             if (dice == null) {
                 return Arrays.asList(0, 0, 0, 0, 0); // Default
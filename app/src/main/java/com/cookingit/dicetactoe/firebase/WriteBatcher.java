@@ -0,0 +1,99 @@
+package com.cookingit.dicetactoe.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coalesces field updates to one game node. Updates queued within the window
+ * are merged, later values replacing earlier ones for the same path, and go
+ * out as a single multi-path updateChildren carrying the player's presence
+ * timestamp. Rolls and moves flush straight away so the opponent sees them
+ * without the delay.
+ *
+ * <p>Callers pass the number of writes each update used to cost on its own
+ * (a dice update, for example, also sent a separate heartbeat);
+ * {@link #getWritesSaved()} counts the difference to what was actually sent.
+ */
+final class WriteBatcher {
+    static final long WINDOW_MILLIS = 300;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushTask = this::flush;
+    private final Map<String, Object> pending = new HashMap<>();
+    private DatabaseReference target;
+    private String presencePath;
+    private boolean scheduled;
+
+    private int requestedWrites;
+    private int sentWrites;
+
+    // Game node to write to and the playerTimestamps child to stamp; pending updates are dropped
+    void setTarget(DatabaseReference target, String playerId) {
+        clear();
+        this.target = target;
+        this.presencePath = playerId != null ? "playerTimestamps/" + playerId : null;
+    }
+
+    void queue(Map<String, Object> updates, int previousWrites) {
+        if (target == null) return;
+        pending.putAll(updates);
+        requestedWrites += previousWrites;
+        if (!scheduled) {
+            scheduled = true;
+            handler.postDelayed(flushTask, WINDOW_MILLIS);
+        }
+    }
+
+    // Queues updates and sends everything pending now; null if there is no game to write to
+    Task<Void> queueAndFlush(Map<String, Object> updates, int previousWrites) {
+        queue(updates, previousWrites);
+        return send();
+    }
+
+    void flush() {
+        Task<Void> task = send();
+        if (task != null) {
+            task.addOnFailureListener(e -> Log.e("WriteBatcher", "Batched write failed: " + e.getMessage(), e));
+        }
+    }
+
+    void clear() {
+        handler.removeCallbacks(flushTask);
+        scheduled = false;
+        pending.clear();
+    }
+
+    int getRequestedWrites() {
+        return requestedWrites;
+    }
+
+    int getSentWrites() {
+        return sentWrites;
+    }
+
+    int getWritesSaved() {
+        return requestedWrites - sentWrites;
+    }
+
+    private Task<Void> send() {
+        handler.removeCallbacks(flushTask);
+        scheduled = false;
+        if (target == null || pending.isEmpty()) return null;
+        Map<String, Object> updates = new HashMap<>(pending);
+        pending.clear();
+        if (presencePath != null) {
+            updates.put(presencePath, ServerValue.TIMESTAMP);
+        }
+        sentWrites++;
+        Log.d("WriteBatcher", "Sending " + updates.size() + " paths, " + getWritesSaved() + " writes saved so far");
+        return target.updateChildren(updates);
+    }
+}
@@ -0,0 +1,32 @@
+// JMH benchmarks for the :core engine hot paths.
+//   ./gradlew :benchmarks:jmh              run everything, JSON to build/results/jmh/results.json
+//   ./gradlew :benchmarks:saveJmhBaseline  copy the last results to baseline/results.json
+// Compare a new run against the saved baseline with any JSON diff or JMH visualizer.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // Narrow a run with -PjmhIncludes=<regex>, e.g. -PjmhIncludes=makeMove
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+}
+
+tasks.register<Copy>("saveJmhBaseline") {
+    description = "Copies the last JMH results to baseline/results.json"
+    from(layout.buildDirectory.file("results/jmh/results.json"))
+    into(layout.projectDirectory.dir("baseline"))
+}
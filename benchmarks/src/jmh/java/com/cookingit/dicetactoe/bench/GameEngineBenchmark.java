@@ -0,0 +1,339 @@
+package com.cookingit.dicetactoe.bench;
+
+import com.cookingit.dicetactoe.Actions;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceCombos;
+import com.cookingit.dicetactoe.DiceSource;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.GameRules;
+import com.cookingit.dicetactoe.Player;
+import com.cookingit.dicetactoe.RemoteGameState;
+import com.cookingit.dicetactoe.SeededDiceSource;
+import com.cookingit.dicetactoe.StateCodec;
+import com.cookingit.dicetactoe.ai.AiPlayer;
+import com.cookingit.dicetactoe.ai.GreedyAiPlayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine hot paths, each measured on the current engine and on
+ * {@link LegacyGameEngine}, the pre-bitboard version. Methods come in pairs
+ * named {@code <operation>_current} / {@code <operation>_legacy}.
+ *
+ * <p>The legacy engine has no undo, so the makeMove benchmarks copy a mid-game
+ * position first; the {@code copy_*} pair measures that copy on its own and
+ * makeUndoMove_current measures the in-place alternative.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+    private static final int HANDS = 1024;
+
+    private GameEngine current;
+    private LegacyGameEngine legacy;
+    // Position with X on 0_0 and 1_1, O on 0_1, X to place with four of a kind
+    private GameEngine placingCurrent;
+    private LegacyGameEngine placingLegacy;
+    private RemoteGameState remote;
+    private LegacyRemoteState legacyRemote;
+    private Map<String, String> remoteBoard;
+    private int remoteCells;
+
+    private final int[][] hands = new int[HANDS][];
+    private final LegacyGameEngine[] legacyHands = new LegacyGameEngine[HANDS];
+    private int hand;
+    private long gameSeed;
+    private final GameEngine reused = new GameEngine(new SeededDiceSource(3));
+    private final GameEngine large = new GameEngine(GameRules.of(7, 4, 8), new SeededDiceSource(4));
+    private final AiPlayer greedy = new GreedyAiPlayer();
+
+    @Setup
+    public void setUp() {
+        SeededDiceSource random = new SeededDiceSource(1);
+        for (int i = 0; i < HANDS; i++) {
+            int[] faces = new int[DiceCombos.DICE];
+            for (int d = 0; d < faces.length; d++) {
+                faces[d] = random.roll();
+            }
+            hands[i] = faces.clone();
+            // The legacy classifier reads the engine's own dice, so give each hand an engine
+            legacyHands[i] = new LegacyGameEngine(DiceSource.scripted(faces));
+            legacyHands[i].rollDice();
+        }
+
+        current = new GameEngine(new SeededDiceSource(2));
+        legacy = new LegacyGameEngine(new SeededDiceSource(2));
+
+        int[] script = {
+                4, 4, 4, 4, 1,   // X 0_0
+                4, 4, 4, 4, 1,   // O 0_1
+                4, 4, 4, 4, 1,   // X 1_1
+                4, 4, 4, 4, 1};  // X to place
+        placingCurrent = new GameEngine(DiceSource.scripted(script));
+        placingLegacy = new LegacyGameEngine(DiceSource.scripted(script));
+        int[][] moves = {{0, 0}, {0, 1}, {1, 1}};
+        for (int[] move : moves) {
+            placingCurrent.rollDice();
+            placingCurrent.skipRolls();
+            placingCurrent.makeMove(move[0], move[1]);
+            placingLegacy.rollDice();
+            placingLegacy.skipRolls();
+            placingLegacy.makeMove(move[0], move[1]);
+        }
+        placingCurrent.rollDice();
+        placingCurrent.skipRolls();
+        placingLegacy.rollDice();
+        placingLegacy.skipRolls();
+
+        Map<String, String> board = StateCodec.encodeBoard(0b000_010_001, 0b000_000_010);
+        List<Integer> dice = Arrays.asList(2, 2, 5, 5, 6);
+        remote = new FixedRemoteState(board, dice);
+        remoteBoard = board;
+        remoteCells = StateCodec.packBoard(0b000_010_001, 0b000_000_010);
+        legacyRemote = new LegacyRemoteState();
+        legacyRemote.board = board;
+        legacyRemote.currentPlayer = "X";
+        legacyRemote.status = "playing";
+        legacyRemote.dice = dice;
+        legacyRemote.currentCombo = "two_pair";
+    }
+
+    // Three rolls and a pass, so every call starts a fresh turn
+    @Benchmark
+    public int rollDiceTurn_current() {
+        current.rollDice();
+        current.rollDice();
+        current.rollDice();
+        current.makeMove(-1, -1);
+        return current.getRollsLeft();
+    }
+
+    @Benchmark
+    public int rollDiceTurn_legacy() {
+        legacy.rollDice();
+        legacy.rollDice();
+        legacy.rollDice();
+        legacy.makeMove(-1, -1);
+        return legacy.getRollsLeft();
+    }
+
+    @Benchmark
+    public Combo getDiceCombination_current() {
+        hand = (hand + 1) & (HANDS - 1);
+        return DiceCombos.classify(hands[hand]);
+    }
+
+    @Benchmark
+    public String getDiceCombination_legacy() {
+        hand = (hand + 1) & (HANDS - 1);
+        return legacyHands[hand].getDiceCombination();
+    }
+
+    @Benchmark
+    public List<int[]> getValidPositions_current() {
+        return placingCurrent.getValidPositions();
+    }
+
+    @Benchmark
+    public int getValidMoveMask_current() {
+        return placingCurrent.getValidMoveMask();
+    }
+
+    @Benchmark
+    public List<int[]> getValidPositions_legacy() {
+        return placingLegacy.getValidPositions();
+    }
+
+    @Benchmark
+    public GameEngine copy_current() {
+        return placingCurrent.copy();
+    }
+
+    @Benchmark
+    public LegacyGameEngine copy_legacy() {
+        return placingLegacy.copy();
+    }
+
+    // Completes the 0_0 - 1_1 - 2_2 diagonal, so checkWinner finds a line
+    @Benchmark
+    public GameEngine.GameState makeMove_current() {
+        GameEngine engine = placingCurrent.copy();
+        engine.makeMove(2, 2);
+        return engine.getGameState();
+    }
+
+    @Benchmark
+    public LegacyGameEngine.GameState makeMove_legacy() {
+        LegacyGameEngine engine = placingLegacy.copy();
+        engine.makeMove(2, 2);
+        return engine.getGameState();
+    }
+
+    // The same move in place: apply, then undo, with no copy
+    @Benchmark
+    public GameEngine.GameState makeUndoMove_current() {
+        placingCurrent.applyAction(Actions.place(2, 2));
+        GameEngine.GameState state = placingCurrent.getGameState();
+        placingCurrent.undoAction();
+        return state;
+    }
+
+    @Benchmark
+    public int syncWithRemote_current() {
+        current.syncWithRemote(remote);
+        return current.getOccupiedMask();
+    }
+
+    @Benchmark
+    public String syncWithRemote_legacy() {
+        legacy.syncWithRemote(legacyRemote);
+        return legacy.getCurrentPlayer();
+    }
+
+    // Decoding both players' marks from the wire: packed int vs "row_col" map
+    @Benchmark
+    public int decodeBoard_packed() {
+        return StateCodec.unpackBoardMask(remoteCells, Player.X) ^ StateCodec.unpackBoardMask(remoteCells, Player.O);
+    }
+
+    @Benchmark
+    public int decodeBoard_map() {
+        return StateCodec.decodeBoardMask(remoteBoard, Player.X) ^ StateCodec.decodeBoardMask(remoteBoard, Player.O);
+    }
+
+    // A whole game: every turn rolls three times and places on the first legal cell
+    @Benchmark
+    public GameEngine.GameState fullGame_current() {
+        GameEngine engine = new GameEngine(new SeededDiceSource(gameSeed++));
+        while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+            boolean noMoves = false;
+            while (engine.getRollsLeft() > 0 && !noMoves) noMoves = engine.rollDice();
+            if (noMoves) {
+                engine.makeMove(-1, -1);
+            } else {
+                int cell = Integer.numberOfTrailingZeros(engine.getValidMoveMask());
+                engine.makeMove(cell / 3, cell % 3);
+            }
+        }
+        return engine.getGameState();
+    }
+
+    // Same game on one reused engine; with -prof gc this should report no allocation per operation
+    @Benchmark
+    public GameEngine.GameState fullGameReused_current() {
+        GameEngine engine = reused;
+        engine.newGame();
+        while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+            boolean noMoves = false;
+            while (engine.getRollsLeft() > 0 && !noMoves) noMoves = engine.rollDice();
+            if (noMoves) {
+                engine.makeMove(-1, -1);
+            } else {
+                int cell = Integer.numberOfTrailingZeros(engine.getValidMoveMask());
+                engine.makeMove(cell / 3, cell % 3);
+            }
+        }
+        return engine.getGameState();
+    }
+
+    // 7x7 board, four in a row, eight dice, both sides played by GreedyAiPlayer
+    @Benchmark
+    public GameEngine.GameState fullGame7x7Greedy_current() {
+        GameEngine engine = large;
+        engine.newGame();
+        int size = engine.getRules().size();
+        while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+            boolean noMoves = engine.rollDice();
+            while (!noMoves && engine.getRollsLeft() > 0) {
+                int keepMask = greedy.chooseKeepMask(engine);
+                if (keepMask == AiPlayer.stopRolling(engine)) {
+                    noMoves = engine.skipRolls();
+                    break;
+                }
+                engine.setKeptMask(keepMask);
+                noMoves = engine.rollDice();
+            }
+            if (noMoves) {
+                engine.makeMove(-1, -1);
+            } else {
+                int cell = greedy.chooseCell(engine);
+                engine.makeMove(cell / size, cell % size);
+            }
+        }
+        return engine.getGameState();
+    }
+
+    @Benchmark
+    public LegacyGameEngine.GameState fullGame_legacy() {
+        LegacyGameEngine engine = new LegacyGameEngine(new SeededDiceSource(gameSeed++));
+        while (engine.getGameState() != LegacyGameEngine.GameState.GAME_OVER) {
+            boolean noMoves = false;
+            while (engine.getRollsLeft() > 0 && !noMoves) noMoves = engine.rollDice();
+            if (noMoves) {
+                engine.makeMove(-1, -1);
+            } else {
+                int[] cell = engine.getValidPositions().get(0);
+                engine.makeMove(cell[0], cell[1]);
+            }
+        }
+        return engine.getGameState();
+    }
+
+    private static final class FixedRemoteState implements RemoteGameState {
+        private final Map<String, String> board;
+        private final List<Integer> dice;
+
+        FixedRemoteState(Map<String, String> board, List<Integer> dice) {
+            this.board = board;
+            this.dice = dice;
+        }
+
+        @Override
+        public int getBoardMask(Player player) {
+            return StateCodec.decodeBoardMask(board, player);
+        }
+
+        @Override
+        public Player getCurrentPlayerValue() {
+            return Player.X;
+        }
+
+        @Override
+        public List<Integer> getDiceAsList() {
+            return dice;
+        }
+
+        @Override
+        public Combo getComboValue() {
+            return Combo.TWO_PAIR;
+        }
+
+        @Override
+        public boolean isPlayingStatus() {
+            return true;
+        }
+
+        @Override
+        public boolean isGameOverStatus() {
+            return false;
+        }
+    }
+}
@@ -1,8 +1,6 @@
-package com.cookingit.dicetactoe;
+package com.cookingit.dicetactoe.bench;
 
-import android.util.Log;
-
-import com.cookingit.dicetactoe.firebase.GameManager;
+import com.cookingit.dicetactoe.DiceSource;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -11,7 +9,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class GameEngine {
+/**
+ * GameEngine as it was before the bitboard rewrite: List-of-Lists board,
+ * HashMap combo counting, String players. Kept here only as the benchmark
+ * baseline. Changes from the original: dice come from a DiceSource so both
+ * engines roll the same faces, syncWithRemote reads a LegacyRemoteState
+ * instead of the Firebase model, logging is dropped, and copy() was added.
+ */
+public class LegacyGameEngine {
     public enum GameState { ROLLING, PLACING, GAME_OVER }
 
     private List<List<String>> board;
@@ -30,10 +35,32 @@ public class GameEngine {
     private int playerXScore = 0;
     private int playerOScore = 0;
 
-    public GameEngine() {
+    private final DiceSource diceSource;
+
+    public LegacyGameEngine(DiceSource diceSource) {
+        this.diceSource = diceSource;
         initializeBoard();
     }
 
+    public LegacyGameEngine copy() {
+        LegacyGameEngine copy = new LegacyGameEngine(diceSource);
+        copy.board = new ArrayList<>();
+        for (List<String> row : board) copy.board.add(new ArrayList<>(row));
+        copy.currentPlayer = currentPlayer;
+        copy.winner = winner;
+        copy.dice = new ArrayList<>(dice);
+        copy.diceRolled = diceRolled;
+        copy.rollsLeft = rollsLeft;
+        copy.gameState = gameState;
+        copy.validPositions = new ArrayList<>(validPositions);
+        copy.currentCombo = currentCombo;
+        copy.hintsVisible = hintsVisible;
+        System.arraycopy(keptDice, 0, copy.keptDice, 0, keptDice.length);
+        copy.playerXScore = playerXScore;
+        copy.playerOScore = playerOScore;
+        return copy;
+    }
+
     private void initializeBoard() {
         board = new ArrayList<>();
         for (int i = 0; i < 3; i++) {
@@ -108,13 +135,13 @@ public class GameEngine {
 
         if (!diceRolled) {
             for (int i = 0; i < 5; i++) {
-                dice.set(i, (int) (Math.random() * 6) + 1);
+                dice.set(i, diceSource.roll());
             }
             diceRolled = true;
         } else {
             for (int i = 0; i < 5; i++) {
                 if (!isDieKept(i)) {
-                    dice.set(i, (int) (Math.random() * 6) + 1);
+                    dice.set(i, diceSource.roll());
                 }
             }
         }
@@ -132,7 +159,7 @@ public class GameEngine {
         return false;
     }
 
-    private String getDiceCombination() {
+    String getDiceCombination() {
         Map<Integer, Integer> counts = new HashMap<>();
         for (Number die : dice) {
             int dieValue = die.intValue(); // Safely convert to int, whether Long or Integer
@@ -299,14 +326,12 @@ public class GameEngine {
         dice = new ArrayList<>(Arrays.asList(0, 0, 0, 0, 0)); // Reset dice
     }
 
-    public void syncWithRemote(GameManager remoteState) {
+    public void syncWithRemote(LegacyRemoteState remoteState) {
         if (remoteState.board == null) {
             remoteState.board = new HashMap<>();
-            Log.w("GameEngine", "Remote board was null, initialized to empty map");
         }
         List<List<String>> newBoard = mapToBoard(remoteState.board);
         if (!isValidBoard(newBoard)) {
-            Log.e("GameEngine", "Invalid board structure, resetting to empty board");
             newBoard = initializeEmptyBoard();
         }
         this.board = newBoard;
@@ -315,7 +340,7 @@ public class GameEngine {
         List<Integer> currentDiceValues = new ArrayList<>(this.dice);
         boolean[] currentKeptStatus = Arrays.copyOf(this.keptDice, this.keptDice.length);
 
-        // Use the helper method from GameManager to get dice as a list
+        // Remote dice as a list
         List<Integer> remoteDice = remoteState.getDiceAsList();
         if (remoteDice != null && remoteDice.size() == 5) {
             // Only update dice values if the remote has actual values
@@ -389,12 +414,10 @@ public class GameEngine {
     // Helper method to validate the board structure
     private boolean isValidBoard(List<List<String>> board) {
         if (board == null || board.size() != 3) {
-            Log.e("GameEngine", "Invalid board: null or incorrect size");
             return false;
         }
         for (List<String> row : board) {
             if (row == null || row.size() != 3) {
-                Log.e("GameEngine", "Invalid board: row is null or incorrect size");
                 return false;
             }
         }
@@ -0,0 +1,18 @@
+package com.cookingit.dicetactoe.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// The GameManager fields LegacyGameEngine.syncWithRemote reads, without Firebase
+public class LegacyRemoteState {
+    public Map<String, String> board;
+    public String currentPlayer;
+    public String status;
+    public List<Integer> dice;
+    public String currentCombo;
+
+    public List<Integer> getDiceAsList() {
+        return dice != null ? dice : Arrays.asList(0, 0, 0, 0, 0);
+    }
+}
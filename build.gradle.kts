@@ -1,6 +1,7 @@
 // Top-level build file where you can add configuration options common to all sub-projects/modules.
 plugins {
     alias(libs.plugins.android.application) apply false
+    alias(libs.plugins.jmh) apply false
 
     // the dependency for the Google services Gradle plugin
     id("com.google.gms.google-services") version "4.4.2" apply false
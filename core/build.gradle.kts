@@ -0,0 +1,14 @@
+// Game rules, engine and AI with no Android or Firebase dependencies, so they
+// also run in plain-JVM simulators, benchmarks and server-side validators.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,68 @@
+package com.cookingit.dicetactoe;
+
+/**
+ * Turn actions packed into an int, for {@link GameEngine#applyAction(int)}.
+ * The low 2 bits hold the type. A roll also carries the kept mask (bits 2-9)
+ * and the faces it produced as base-6 digits from bit 10, die 0 lowest, so
+ * search code can apply chance outcomes it picked itself; faces of kept dice
+ * are ignored. Up to {@link GameRules#MAX_DICE} dice fit.
+ */
+public final class Actions {
+    public static final int ROLL = 0;
+    public static final int STOP = 1;  // stop rolling, same as GameEngine.skipRolls
+    public static final int PLACE = 2;
+    public static final int PASS = 3;  // no legal cell, same as makeMove(-1, -1)
+
+    private static final int KEEP_SHIFT = 2;
+    private static final int FACES_SHIFT = 10;
+    private static final int ARG_SHIFT = 2;
+    private static final int[] POW6 = new int[GameRules.MAX_DICE];
+
+    static {
+        POW6[0] = 1;
+        for (int i = 1; i < POW6.length; i++) POW6[i] = POW6[i - 1] * 6;
+    }
+
+    private Actions() {}
+
+    public static int roll(int keepMask, int[] faces) {
+        int digits = 0;
+        for (int i = faces.length - 1; i >= 0; i--) {
+            digits = digits * 6 + Math.max(faces[i] - 1, 0);
+        }
+        return ROLL | (keepMask & 0xFF) << KEEP_SHIFT | digits << FACES_SHIFT;
+    }
+
+    public static int stop() {
+        return STOP;
+    }
+
+    public static int place(int cell) {
+        return PLACE | cell << ARG_SHIFT;
+    }
+
+    // Cell on the standard 3x3 board; other boards use place(rules.cell(row, col))
+    public static int place(int row, int col) {
+        return place(Bitboard.cell(row, col));
+    }
+
+    public static int pass() {
+        return PASS;
+    }
+
+    public static int type(int action) {
+        return action & 3;
+    }
+
+    public static int keepMask(int action) {
+        return (action >>> KEEP_SHIFT) & 0xFF;
+    }
+
+    public static int face(int action, int die) {
+        return (action >>> FACES_SHIFT) / POW6[die] % 6 + 1;
+    }
+
+    public static int cell(int action) {
+        return action >>> ARG_SHIFT;
+    }
+}
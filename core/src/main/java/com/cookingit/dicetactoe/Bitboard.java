@@ -0,0 +1,69 @@
+package com.cookingit.dicetactoe;
+
+/**
+ * Bit layout of the 3x3 board. Cell (row, col) is bit {@code row * 3 + col}, so a
+ * player's marks fit in the low 9 bits of an int.
+ */
+public final class Bitboard {
+    public static final int SIZE = 3;
+    public static final int CELLS = SIZE * SIZE;
+    public static final int FULL = (1 << CELLS) - 1;
+
+    // The 8 winning lines: 3 rows, 3 columns, 2 diagonals
+    public static final int[] LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    // LINES_THROUGH[cell] lists the indices into LINES of every line that contains the cell
+    public static final int[][] LINES_THROUGH = new int[CELLS][];
+
+    // Placement regions
+    public static final int CORNERS = 0b101_000_101;
+    public static final int EDGES = 0b010_101_010;
+    public static final int CENTER = 0b000_010_000;
+    public static final int MIDDLE_ROW_AND_COLUMN = 0b010_111_010;
+
+    // WINS[mask] is true when the mask contains at least one full line
+    private static final boolean[] WINS = new boolean[1 << CELLS];
+
+    static {
+        for (int mask = 0; mask < WINS.length; mask++) {
+            for (int line : LINES) {
+                if ((mask & line) == line) {
+                    WINS[mask] = true;
+                    break;
+                }
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            int count = 0;
+            for (int line : LINES) {
+                if ((line & (1 << cell)) != 0) count++;
+            }
+            LINES_THROUGH[cell] = new int[count];
+            for (int i = 0, n = 0; i < LINES.length; i++) {
+                if ((LINES[i] & (1 << cell)) != 0) LINES_THROUGH[cell][n++] = i;
+            }
+        }
+    }
+
+    private Bitboard() {}
+
+    public static int cell(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    public static int bit(int row, int col) {
+        return 1 << cell(row, col);
+    }
+
+    public static boolean hasLine(int mask) {
+        return WINS[mask & FULL];
+    }
+
+    public static boolean isFull(int occupied) {
+        return (occupied & FULL) == FULL;
+    }
+}
@@ -0,0 +1,47 @@
+package com.cookingit.dicetactoe;
+
+/**
+ * Dice combinations in the order they are checked, strongest first.
+ */
+public enum Combo {
+    FIVE_OF_A_KIND("five_of_a_kind", Bitboard.FULL),
+    FOUR_OF_A_KIND("four_of_a_kind", Bitboard.FULL),
+    FULL_HOUSE("full_house", Bitboard.CORNERS | Bitboard.CENTER),
+    STRAIGHT("straight", Bitboard.MIDDLE_ROW_AND_COLUMN),
+    THREE_OF_A_KIND("three_of_a_kind", Bitboard.CORNERS | Bitboard.EDGES),
+    TWO_PAIR("two_pair", Bitboard.CORNERS),
+    ONE_PAIR("one_pair", Bitboard.EDGES),
+    ALL_DIFFERENT("all_different", Bitboard.CENTER);
+
+    private static final Combo[] VALUES = values();
+
+    private final String key;
+    private final int allowedMask;
+
+    Combo(String key, int allowedMask) {
+        this.key = key;
+        this.allowedMask = allowedMask;
+    }
+
+    public static Combo fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    // Parses the Firebase key, null for "" or anything unknown
+    public static Combo fromKey(String key) {
+        for (Combo combo : VALUES) {
+            if (combo.key.equals(key)) return combo;
+        }
+        return null;
+    }
+
+    // Name used in the placement rules and in Firebase
+    public String key() {
+        return key;
+    }
+
+    // Cells this combination may be placed on, before removing occupied ones
+    public int allowedMask() {
+        return allowedMask;
+    }
+}
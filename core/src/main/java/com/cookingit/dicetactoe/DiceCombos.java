@@ -0,0 +1,83 @@
+package com.cookingit.dicetactoe;
+
+import java.util.List;
+
+/**
+ * Classifies five dice with a precomputed table. The dice are packed base 6
+ * (die i contributes {@code (value - 1) * 6^i}), giving 6^5 = 7776 entries,
+ * so a lookup is a pack plus one array read and never allocates.
+ */
+public final class DiceCombos {
+    public static final int DICE = 5;
+    public static final int FACES = 6;
+    public static final int PACKED_SIZE = 7776; // 6^5
+
+    private static final Combo[] COMBOS = Combo.values();
+    private static final byte[] TABLE = new byte[PACKED_SIZE];
+
+    static {
+        for (int packed = 0; packed < PACKED_SIZE; packed++) {
+            long histogram = 0;
+            int rest = packed;
+            for (int i = 0; i < DICE; i++) {
+                histogram += 1L << (4 * (rest % FACES));
+                rest /= FACES;
+            }
+            TABLE[packed] = (byte) classifyHistogram(histogram, 4).ordinal();
+        }
+    }
+
+    private DiceCombos() {}
+
+    public static int pack(int[] dice) {
+        int packed = 0;
+        for (int i = DICE - 1; i >= 0; i--) {
+            packed = packed * FACES + (dice[i] - 1);
+        }
+        return packed;
+    }
+
+    public static int pack(List<Integer> dice) {
+        int packed = 0;
+        for (int i = DICE - 1; i >= 0; i--) {
+            packed = packed * FACES + (dice.get(i) - 1);
+        }
+        return packed;
+    }
+
+    public static Combo classify(int packed) {
+        return COMBOS[TABLE[packed]];
+    }
+
+    public static Combo classify(int[] dice) {
+        return classify(pack(dice));
+    }
+
+    /**
+     * Classifies any number of dice (up to 15) from a histogram holding the
+     * count of face f + 1 in bits 4f..4f+3. A run of straightRun consecutive
+     * faces is a straight; five dice use 4.
+     */
+    public static Combo classifyHistogram(long histogram, int straightRun) {
+        int threes = 0;
+        int pairs = 0;
+        int consecutive = 0;
+        boolean straight = false;
+        for (int f = 0; f < FACES; f++) {
+            int count = (int) (histogram >>> (4 * f)) & 0xF;
+            if (count >= 5) return Combo.FIVE_OF_A_KIND;
+            if (count == 4) return Combo.FOUR_OF_A_KIND;
+            if (count == 3) threes++;
+            if (count == 2) pairs++;
+            consecutive = count > 0 ? consecutive + 1 : 0;
+            if (consecutive >= straightRun) straight = true;
+        }
+        boolean hasThree = threes > 0;
+        if (hasThree && (pairs > 0 || threes > 1)) return Combo.FULL_HOUSE;
+        if (straight) return Combo.STRAIGHT;
+        if (hasThree) return Combo.THREE_OF_A_KIND;
+        if (pairs >= 2) return Combo.TWO_PAIR;
+        if (pairs == 1) return Combo.ONE_PAIR;
+        return Combo.ALL_DIFFERENT;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cookingit.dicetactoe;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Supplies die faces to GameEngine. Implementations are not shared between
+ * threads unless stated, so each engine can own its source.
+ */
+public interface DiceSource {
+
+    // Returns a face in 1..6
+    int roll();
+
+    // Default source, backed by the calling thread's ThreadLocalRandom so parallel games never contend
+    static DiceSource threadLocal() {
+        return ThreadLocalDiceSource.INSTANCE;
+    }
+
+    static DiceSource seeded(long seed) {
+        return new SeededDiceSource(seed);
+    }
+
+    static DiceSource scripted(int... faces) {
+        return new ScriptedDiceSource(faces);
+    }
+
+    final class ThreadLocalDiceSource implements DiceSource {
+        static final ThreadLocalDiceSource INSTANCE = new ThreadLocalDiceSource();
+
+        private ThreadLocalDiceSource() {}
+
+        @Override
+        public int roll() {
+            return ThreadLocalRandom.current().nextInt(6) + 1;
+        }
+    }
+}
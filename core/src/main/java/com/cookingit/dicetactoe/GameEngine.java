@@ -0,0 +1,612 @@
+package com.cookingit.dicetactoe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GameEngine {
+    public enum GameState { ROLLING, PLACING, GAME_OVER }
+
+    // Placement rule text, indexed by Combo ordinal
+    private static final String[] PLACEMENT_RULES = new String[Combo.values().length];
+
+    static {
+        PLACEMENT_RULES[Combo.FIVE_OF_A_KIND.ordinal()] = "Any square";
+        PLACEMENT_RULES[Combo.FOUR_OF_A_KIND.ordinal()] = "Any square";
+        PLACEMENT_RULES[Combo.FULL_HOUSE.ordinal()] = "Any corner or center square";
+        PLACEMENT_RULES[Combo.STRAIGHT.ordinal()] = "Any middle row or column square";
+        PLACEMENT_RULES[Combo.THREE_OF_A_KIND.ordinal()] = "Any square except the center";
+        PLACEMENT_RULES[Combo.TWO_PAIR.ordinal()] = "Any corner square";
+        PLACEMENT_RULES[Combo.ONE_PAIR.ordinal()] = "Any edge square (non-corner)";
+        PLACEMENT_RULES[Combo.ALL_DIFFERENT.ordinal()] = "Only the center square";
+    }
+
+    private GameRules rules;
+    // One occupancy mask per player, indexed by Player ordinal. See GameRules for the cell layout
+    private final long[] boardMasks = new long[2];
+    // Kept in step with boardMasks so a move only looks at the lines through its cell:
+    // marks per line for each player, completed lines per player, and filled cells
+    private int[][] lineCounts;
+    private final int[] fullLines = new int[2];
+    private int filledCells = 0;
+    private Player currentPlayer = Player.X;
+    private Player winner = null;
+    private boolean draw = false;
+    // Face values, 0 before the first roll. Reused across turns so the turn loop never allocates
+    private int[] dice;
+    private boolean diceRolled = false;
+    private int rollsLeft = 3;
+    private GameState gameState = GameState.ROLLING;
+    private long validMask = 0;
+    private Combo currentCombo = null;
+    private boolean hintsVisible = true;
+    private boolean[] keptDice;
+    // Kept mask of the last roll this turn. Undo restores this rather than the live mask, since
+    // choosing dice between actions is not logged, so live and replayed undos agree
+    private int rolledKeptMask = 0;
+    private int playerXScore = 0;
+    private int playerOScore = 0;
+    private final DiceSource diceSource;
+
+    // Undo history, one delta per action; see pushUndo for the layout
+    private static final int UNDO_CAPACITY = 64;
+    private static final GameState[] STATES = GameState.values();
+    private long[] undoStack = new long[UNDO_CAPACITY];
+    private int undoSize = 0;
+    // Optional event log, see setRecord
+    private GameRecord record;
+
+    public GameEngine() {
+        this(DiceSource.threadLocal());
+    }
+
+    public GameEngine(DiceSource diceSource) {
+        this(GameRules.STANDARD, diceSource);
+    }
+
+    public GameEngine(GameRules rules, DiceSource diceSource) {
+        this.diceSource = diceSource;
+        setRules(rules);
+    }
+
+    // Switches to other rules and starts a new game; scores are kept
+    public void setRules(GameRules rules) {
+        if (rules != this.rules) {
+            this.rules = rules;
+            lineCounts = new int[2][rules.lineCount()];
+            dice = new int[rules.dice()];
+            keptDice = new boolean[rules.dice()];
+        }
+        newGame();
+    }
+
+    public GameRules getRules() { return rules; }
+
+    // Snapshot for search and background AI work; shares the dice source, so the copy should not roll.
+    // The copy starts with an empty undo history and no record
+    public GameEngine copy() {
+        GameEngine copy = new GameEngine(rules, diceSource);
+        copy.boardMasks[0] = boardMasks[0];
+        copy.boardMasks[1] = boardMasks[1];
+        for (int p = 0; p < 2; p++) {
+            System.arraycopy(lineCounts[p], 0, copy.lineCounts[p], 0, lineCounts[p].length);
+        }
+        copy.fullLines[0] = fullLines[0];
+        copy.fullLines[1] = fullLines[1];
+        copy.filledCells = filledCells;
+        copy.currentPlayer = currentPlayer;
+        copy.winner = winner;
+        copy.draw = draw;
+        System.arraycopy(dice, 0, copy.dice, 0, dice.length);
+        copy.diceRolled = diceRolled;
+        copy.rollsLeft = rollsLeft;
+        copy.gameState = gameState;
+        copy.validMask = validMask;
+        copy.currentCombo = currentCombo;
+        copy.hintsVisible = hintsVisible;
+        System.arraycopy(keptDice, 0, copy.keptDice, 0, keptDice.length);
+        copy.rolledKeptMask = rolledKeptMask;
+        copy.playerXScore = playerXScore;
+        copy.playerOScore = playerOScore;
+        return copy;
+    }
+
+    private void initializeBoard() {
+        boardMasks[0] = 0;
+        boardMasks[1] = 0;
+        Arrays.fill(lineCounts[0], 0);
+        Arrays.fill(lineCounts[1], 0);
+        fullLines[0] = 0;
+        fullLines[1] = 0;
+        filledCells = 0;
+    }
+
+    // Marks an empty cell and updates the counters of the lines through it
+    private void place(Player player, int cell) {
+        int p = player.ordinal();
+        boardMasks[p] |= 1L << cell;
+        filledCells++;
+        int[] counts = lineCounts[p];
+        int length = rules.lineLength();
+        for (int line : rules.linesThrough(cell)) {
+            if (++counts[line] == length) fullLines[p]++;
+        }
+    }
+
+    private void unplace(Player player, int cell) {
+        int p = player.ordinal();
+        boardMasks[p] &= ~(1L << cell);
+        filledCells--;
+        int[] counts = lineCounts[p];
+        int length = rules.lineLength();
+        for (int line : rules.linesThrough(cell)) {
+            if (counts[line]-- == length) fullLines[p]--;
+        }
+    }
+
+    private void placeAll(Player player, long mask) {
+        while (mask != 0) {
+            place(player, Long.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+        }
+    }
+
+    public void setPlayerXScore(int score) {
+        this.playerXScore = score;
+    }
+
+    public void setPlayerOScore(int score) {
+        this.playerOScore = score;
+    }
+
+    public boolean rollDice() {
+        if (rollsLeft <= 0) {
+            return false;
+        }
+
+        pushUndo(-1);
+        for (int i = 0; i < dice.length; i++) {
+            // The first roll of a turn ignores kept dice
+            if (!diceRolled || !keptDice[i]) {
+                dice[i] = diceSource.roll();
+            }
+        }
+        return finishRoll();
+    }
+
+    // Roll with faces chosen by the caller, see Actions.roll
+    private boolean rollDice(int action) {
+        if (rollsLeft <= 0) {
+            return false;
+        }
+
+        // The delta holds the mask from before the action, so undoing the roll also restores it
+        pushUndo(-1);
+        setKeptMask(Actions.keepMask(action));
+        for (int i = 0; i < dice.length; i++) {
+            if (!diceRolled || !keptDice[i]) {
+                dice[i] = Actions.face(action, i);
+            }
+        }
+        return finishRoll();
+    }
+
+    private boolean finishRoll() {
+        if (record != null) record.appendRoll(getKeptMask(), dice, !diceRolled);
+        rolledKeptMask = getKeptMask();
+        diceRolled = true;
+        rollsLeft--;
+        currentCombo = getDiceCombination();
+
+        if (rollsLeft == 0) {
+            validMask = getValidMoves();
+            if (validMask == 0) {
+                return true;
+            } else {
+                gameState = GameState.PLACING;
+            }
+        }
+        return false;
+    }
+
+    private Combo getDiceCombination() {
+        return rules.classify(dice);
+    }
+
+    // Empty cells the current combination allows, one bit per cell
+    public long getValidMoves() {
+        if (currentCombo == null) return 0;
+        return rules.allowedMask(currentCombo) & ~getOccupied();
+    }
+
+    // getValidMoves as an int, for code that only handles boards of up to 32 cells such as the standard one
+    public int getValidMoveMask() {
+        return narrow(getValidMoves());
+    }
+
+    // Convenience for UI code; allocates, so hot paths should use getValidMoves
+    public List<int[]> getValidPositions() {
+        List<int[]> positions = new ArrayList<>();
+        long mask = getValidMoves();
+        int size = rules.size();
+        while (mask != 0) {
+            int cell = Long.numberOfTrailingZeros(mask);
+            positions.add(new int[]{cell / size, cell % size});
+            mask &= mask - 1;
+        }
+        return positions;
+    }
+
+    public void makeMove(int row, int col) {
+        if (row == -1 && col == -1) {
+            pushUndo(-1);
+            if (record != null) record.appendPass();
+            switchPlayer();
+        } else if (isValidMove(row, col)) {
+            int cell = rules.cell(row, col);
+            pushUndo(cell);
+            if (record != null) record.appendPlace(cell);
+            place(currentPlayer, cell);
+            checkWinner();
+            if (gameState != GameState.GAME_OVER) {
+                switchPlayer();
+            }
+        }
+    }
+
+    /**
+     * Applies an action built with {@link Actions}. Returns true when the action
+     * ended the rolling phase with no legal cell, like rollDice and skipRolls.
+     * Every action that changes the state can be reverted with undoAction.
+     */
+    public boolean applyAction(int action) {
+        switch (Actions.type(action)) {
+            case Actions.ROLL:
+                return rollDice(action);
+            case Actions.STOP:
+                return skipRolls();
+            case Actions.PLACE:
+                int cell = Actions.cell(action);
+                makeMove(cell / rules.size(), cell % rules.size());
+                return false;
+            default:
+                makeMove(-1, -1);
+                return false;
+        }
+    }
+
+    // Whether the rules allow the action now: what the UI would let a player do in this state
+    public boolean isLegalAction(int action) {
+        switch (Actions.type(action)) {
+            case Actions.ROLL:
+                return gameState == GameState.ROLLING && rollsLeft > 0;
+            case Actions.STOP:
+                return gameState == GameState.ROLLING && diceRolled && rollsLeft > 0;
+            case Actions.PLACE:
+                int cell = Actions.cell(action);
+                return cell < rules.cells() && isValidMove(cell / rules.size(), cell % rules.size());
+            default:
+                return gameState == GameState.ROLLING && diceRolled && rollsLeft == 0
+                        && getValidMoves() == 0;
+        }
+    }
+
+    // Reverts the latest roll, stop, placement or pass. Returns false when there is nothing to undo
+    public boolean undoAction() {
+        if (undoSize == 0) {
+            return false;
+        }
+        long delta = undoStack[--undoSize];
+        if (record != null) record.appendUndo();
+        int cell = (int) (delta & 0x7F) - 1;
+        Player mover = Player.fromOrdinal((int) (delta >>> 7) & 1);
+        if (cell >= 0) {
+            if (winner != null) decrementScore(winner);
+            unplace(mover, cell);
+        }
+        currentPlayer = mover;
+        rollsLeft = (int) (delta >>> 8) & 3;
+        rolledKeptMask = (int) (delta >>> 10) & 0xFF;
+        setKeptMask(rolledKeptMask);
+        int combo = (int) (delta >>> 18) & 0xF;
+        currentCombo = combo == 0 ? null : Combo.fromOrdinal(combo - 1);
+        gameState = STATES[(int) (delta >>> 22) & 3];
+        diceRolled = ((delta >>> 24) & 1) != 0;
+        for (int i = 0; i < dice.length; i++) {
+            dice[i] = (int) (delta >>> (25 + 3 * i)) & 7;
+        }
+        // Only the last roll or a stop sets the valid cells, so they follow from the restored fields
+        validMask = rollsLeft == 0 ? getValidMoves() : 0;
+        findWinner();
+        return true;
+    }
+
+    public boolean canUndo() { return undoSize > 0; }
+
+    // Logs every roll, stop, placement, pass and undo from now on; null stops logging.
+    // newGame swaps in a fresh record, and syncWithRemote detaches it since remote changes are not logged
+    public void setRecord(GameRecord record) { this.record = record; }
+    public GameRecord getRecord() { return record; }
+
+    // Saves everything an action can change, except the board, which only needs the placed cell (or -1).
+    // Bits: 0-6 cell + 1, 7 player, 8-9 rolls left, 10-17 rolledKeptMask, 18-21 combo ordinal + 1,
+    // 22-23 game state, 24 dice rolled, 25-48 dice (3 bits each)
+    private void pushUndo(int cell) {
+        if (undoSize == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+        }
+        long delta = cell + 1
+                | (long) currentPlayer.ordinal() << 7
+                | (long) rollsLeft << 8
+                | (long) rolledKeptMask << 10
+                | (long) (currentCombo == null ? 0 : currentCombo.ordinal() + 1) << 18
+                | (long) gameState.ordinal() << 22
+                | (diceRolled ? 1L : 0L) << 24;
+        for (int i = 0; i < dice.length; i++) {
+            delta |= (long) dice[i] << (25 + 3 * i);
+        }
+        undoStack[undoSize++] = delta;
+    }
+
+    private void checkWinner() {
+        findWinner();
+        if (winner != null) {
+            incrementScore(winner);
+            gameState = GameState.GAME_OVER;
+        } else if (draw) {
+            gameState = GameState.GAME_OVER;
+        }
+    }
+
+    public void setWinner(Player winner) {
+        this.winner = winner;
+        this.draw = false;
+    }
+
+    private void switchPlayer() {
+        currentPlayer = currentPlayer.opponent();
+        diceRolled = false;
+        rollsLeft = 3;
+        gameState = GameState.ROLLING;
+        validMask = 0;
+        currentCombo = null;
+        Arrays.fill(keptDice, false);
+        rolledKeptMask = 0;
+        Arrays.fill(dice, 0); // Reset dice
+    }
+
+    // Applies one move made on the other device: mover marks cell (-1 for a pass) and, unless that
+    // ends the game, the turn passes to the opponent. Returns false without changing anything if the
+    // move does not fit the local board, in which case the caller should syncWithRemote instead
+    public boolean applyRemoteMove(int cell, Player mover) {
+        if (cell >= rules.cells() || (cell >= 0 && (getOccupied() & 1L << cell) != 0)
+                || gameState == GameState.GAME_OVER) {
+            return false;
+        }
+        undoSize = 0;
+        record = null;
+        if (cell >= 0) {
+            place(mover, cell);
+        }
+        findWinner();
+        if (winner != null || draw) {
+            gameState = GameState.GAME_OVER;
+            validMask = 0;
+        } else {
+            currentPlayer = mover;
+            switchPlayer();
+        }
+        return true;
+    }
+
+    public void syncWithRemote(RemoteGameState remoteState) {
+        undoSize = 0; // local history no longer matches the board
+        record = null; // nor does the event log
+        long remoteX = remoteState.getBoardMask(Player.X) & 0xFFFFFFFFL;
+        long remoteO = remoteState.getBoardMask(Player.O) & 0xFFFFFFFFL;
+        long localX = boardMasks[Player.X.ordinal()];
+        long localO = boardMasks[Player.O.ordinal()];
+        if ((remoteX & localX) == localX && (remoteO & localO) == localO) {
+            // Usual case: the remote only added marks, so apply just those
+            placeAll(Player.X, remoteX & ~localX);
+            placeAll(Player.O, remoteO & ~localO);
+        } else {
+            // Marks were removed, e.g. the remote started a new game; rebuild
+            initializeBoard();
+            placeAll(Player.X, remoteX);
+            placeAll(Player.O, remoteO);
+        }
+
+        syncDiceWithRemote(remoteState);
+
+        if (remoteState.isGameOverStatus()) {
+            this.gameState = GameState.GAME_OVER;
+        } else if (remoteState.isPlayingStatus()) {
+            this.gameState = this.rollsLeft > 0 ? GameState.ROLLING : GameState.PLACING;
+        }
+
+        findWinner();
+        validMask = getValidMoves();
+    }
+
+    // The dice, kept dice, combination and player to move of the remote state; the board is left alone
+    public void syncDiceWithRemote(RemoteGameState remoteState) {
+        Player remotePlayer = remoteState.getCurrentPlayerValue();
+        if (remotePlayer == null) {
+            remotePlayer = Player.X;
+        }
+
+        List<Integer> remoteDice = remoteState.getDiceAsList();
+        if (remoteDice != null && remoteDice.size() == dice.length) {
+            // Only update dice values if the remote has actual values
+            boolean hasNonZeroValues = false;
+            for (Integer value : remoteDice) {
+                if (value > 0) {
+                    hasNonZeroValues = true;
+                    break;
+                }
+            }
+
+            // Same player's turn: preserve kept dice values. Otherwise reset kept status and use remote dice
+            boolean preserveKept = hasNonZeroValues && this.currentPlayer == remotePlayer;
+            for (int i = 0; i < dice.length; i++) {
+                if (!(preserveKept && keptDice[i])) {
+                    dice[i] = remoteDice.get(i);
+                }
+            }
+            int remoteKept = remoteState.getKeptMaskValue();
+            if (remoteKept >= 0 && hasNonZeroValues) {
+                // Records that carry the kept mask say exactly which dice are held
+                for (int i = 0; i < dice.length; i++) {
+                    dice[i] = remoteDice.get(i);
+                    keptDice[i] = (remoteKept & (1 << i)) != 0;
+                }
+            } else if (!preserveKept) {
+                Arrays.fill(keptDice, false);
+            }
+        } else {
+            // Invalid remote dice, reset to defaults
+            Arrays.fill(dice, 0);
+            Arrays.fill(keptDice, false);
+        }
+
+        this.currentPlayer = remotePlayer;
+        this.currentCombo = remoteState.getComboValue();
+        rolledKeptMask = getKeptMask();
+        validMask = getValidMoves();
+    }
+
+    private void findWinner() {
+        if (fullLines[Player.X.ordinal()] > 0) {
+            winner = Player.X;
+        } else if (fullLines[Player.O.ordinal()] > 0) {
+            winner = Player.O;
+        } else {
+            winner = null;
+        }
+        draw = winner == null && filledCells == rules.cells();
+    }
+
+    public Player getCurrentPlayer() { return currentPlayer; }
+    public int getRollsLeft() { return rollsLeft; }
+    public Combo getCurrentCombination() { return currentCombo; }
+    public String getPlacementRule() {
+        return currentCombo == null ? null : PLACEMENT_RULES[currentCombo.ordinal()];
+    }
+    public boolean hintsEnabled() { return hintsVisible; }
+    public void toggleHints() { hintsVisible = !hintsVisible; }
+    public Player getCellValue(int row, int col) {
+        long bit = rules.bit(row, col);
+        if ((boardMasks[Player.X.ordinal()] & bit) != 0) return Player.X;
+        if ((boardMasks[Player.O.ordinal()] & bit) != 0) return Player.O;
+        return null;
+    }
+    public long getBoard(Player player) { return boardMasks[player.ordinal()]; }
+    public long getOccupied() { return boardMasks[0] | boardMasks[1]; }
+    // int views of the board for code that only handles boards of up to 32 cells, such as the AI and Firebase
+    public int getBoardMask(Player player) { return narrow(getBoard(player)); }
+    public int getOccupiedMask() { return narrow(getOccupied()); }
+    private int narrow(long mask) {
+        if (rules.cells() > 32) {
+            throw new IllegalStateException("Board has " + rules.cells() + " cells; use the long accessors");
+        }
+        return (int) mask;
+    }
+    private boolean isCellEmpty(int row, int col) {
+        return (getOccupied() & rules.bit(row, col)) == 0;
+    }
+    // Copy of the dice for UI and network code; hot paths should use getDie or copyDice
+    public int[] getDiceValues() {
+        return dice.clone();
+    }
+    public int getDie(int index) { return dice[index]; }
+    public int getDiceCount() { return dice.length; }
+    // Copies the dice into out, which must hold at least getDiceCount() values
+    public void copyDice(int[] out) {
+        System.arraycopy(dice, 0, out, 0, dice.length);
+    }
+
+    public boolean isDieKept(int index) {
+        if (index < 0 || index >= keptDice.length) return false;
+        return keptDice[index];
+    }
+    public void setDieKeptStatus(int index, boolean kept) {
+        if (index >= 0 && index < keptDice.length) {
+            keptDice[index] = kept;
+        }
+    }
+
+    // Kept dice as a bitmask, bit i for die i
+    public int getKeptMask() {
+        int mask = 0;
+        for (int i = 0; i < keptDice.length; i++) {
+            if (keptDice[i]) mask |= 1 << i;
+        }
+        return mask;
+    }
+    public void setKeptMask(int mask) {
+        for (int i = 0; i < keptDice.length; i++) {
+            keptDice[i] = (mask & (1 << i)) != 0;
+        }
+    }
+
+    public boolean isValidMove(int row, int col) {
+        if (gameState != GameState.PLACING) return false;
+        if (row < 0 || row >= rules.size() || col < 0 || col >= rules.size()) return false;
+        return isCellEmpty(row, col) && isValidPosition(row, col);
+    }
+
+    private boolean isValidPosition(int row, int col) {
+        return (validMask & rules.bit(row, col)) != 0;
+    }
+    public boolean skipRolls() {
+        pushUndo(-1);
+        if (record != null) record.appendStop();
+        rollsLeft = 0;
+        validMask = getValidMoves();
+        if (validMask == 0) {
+            return true;
+        } else {
+            gameState = GameState.PLACING;
+        }
+        return false;
+    }
+    public boolean hasDiceRolled() { return diceRolled; }
+    public int getPlayerXScore() { return playerXScore; }
+    public int getPlayerOScore() { return playerOScore; }
+    public void incrementScore(Player player) {
+        if (player == Player.X) playerXScore++;
+        else if (player == Player.O) playerOScore++;
+    }
+    private void decrementScore(Player player) {
+        if (player == Player.X) playerXScore--;
+        else if (player == Player.O) playerOScore--;
+    }
+
+    public void newGame() {
+        initializeBoard();
+        undoSize = 0;
+        if (record != null) record = new GameRecord(rules);
+        currentPlayer = Player.X;
+        winner = null;
+        draw = false;
+        Arrays.fill(dice, 0);
+        diceRolled = false;
+        rollsLeft = 3;
+        gameState = GameState.ROLLING;
+        validMask = 0;
+        currentCombo = null;
+        Arrays.fill(keptDice, false);
+        rolledKeptMask = 0;
+
+        // Don't reset scores here - that would reset the running score
+        // If you want to reset scores, uncomment these lines:
+        // playerXScore = 0;
+        // playerOScore = 0;
+    }
+
+    // Winning player, or null while the game is running or when it ended in a draw
+    public Player getWinner() { return winner; }
+    public boolean isDraw() { return draw; }
+    public GameState getGameState() { return gameState; }
+}
@@ -0,0 +1,293 @@
+package com.cookingit.dicetactoe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append-only log of one game: every roll result with its kept mask, every
+ * stop, placement, pass and undo, in the order they happened. Replaying it
+ * into a fresh {@link GameEngine} reproduces the game exactly, since the
+ * rolled faces are in the log and no dice source is needed.
+ *
+ * <p>The bytes are a header followed by one unsigned LEB128 varint per event.
+ * Games under the standard rules have a one-byte header, version 1; any other
+ * rules use version 2 followed by the board size, line length and dice count,
+ * one byte each. The low 2 bits of an event are its {@link Actions} type:
+ * <ul>
+ *   <li>roll: bit 2 set for the first roll of a turn, then the kept mask (one
+ *   bit per die), then the faces as base-6 digits, die 0 lowest. The first roll
+ *   stores every face, later rolls only those of the rerolled dice</li>
+ *   <li>stop: no payload</li>
+ *   <li>place: the cell from bit 2</li>
+ *   <li>pass: 0 from bit 2, or 1 for an undo</li>
+ * </ul>
+ * A turn typically takes 5 to 10 bytes.
+ */
+public final class GameRecord {
+    public static final int VERSION = 1;
+    // Version of records with a rules header
+    public static final int RULES_VERSION = 2;
+    // Event returned by Cursor.next for an undo; every other event is an Actions value
+    public static final int UNDO = -1;
+
+    private static final int FIRST_ROLL = 1 << 2;
+    private static final int UNDO_EVENT = 1 << 2 | Actions.PASS;
+
+    private final GameRules rules;
+    private byte[] bytes;
+    private int length;
+    private int events = 0;
+
+    public GameRecord() {
+        this(GameRules.STANDARD);
+    }
+
+    public GameRecord(GameRules rules) {
+        this.rules = rules;
+        bytes = new byte[64];
+        if (rules.isStandard()) {
+            bytes[0] = VERSION;
+            length = 1;
+        } else {
+            bytes[0] = RULES_VERSION;
+            bytes[1] = (byte) rules.size();
+            bytes[2] = (byte) rules.lineLength();
+            bytes[3] = (byte) rules.dice();
+            length = 4;
+        }
+    }
+
+    private GameRecord(GameRules rules, byte[] bytes, int events) {
+        this.rules = rules;
+        this.bytes = bytes;
+        this.length = bytes.length;
+        this.events = events;
+    }
+
+    // Parses bytes from toByteArray, checking the header and the varint framing
+    public static GameRecord fromBytes(byte[] data) {
+        return fromBytes(data, 0, data.length);
+    }
+
+    public static GameRecord fromBytes(byte[] data, int offset, int length) {
+        byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+        GameRules rules = readRules(ByteBuffer.wrap(copy), 0, length);
+        int events = 0;
+        int pos = headerSize(copy[0]);
+        while (pos < copy.length) {
+            pos = skipVarint(copy, pos);
+            events++;
+        }
+        return new GameRecord(rules, copy, events);
+    }
+
+    // Parses the hex form produced by toString
+    public static GameRecord fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd-length game record hex");
+        }
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid game record hex at " + 2 * i);
+            }
+            data[i] = (byte) (high << 4 | low);
+        }
+        return fromBytes(data);
+    }
+
+    public void appendRoll(int keepMask, int[] dice, boolean firstRoll) {
+        keepMask &= (1 << rules.dice()) - 1;
+        long digits = facesToDigits(dice, firstRoll ? 0 : keepMask);
+        appendEvent(digits << (3 + rules.dice()) | keepMask << 3 | (firstRoll ? FIRST_ROLL : 0) | Actions.ROLL);
+    }
+
+    public void appendStop() {
+        appendEvent(Actions.STOP);
+    }
+
+    public void appendPlace(int cell) {
+        appendEvent(cell << 2 | Actions.PLACE);
+    }
+
+    public void appendPass() {
+        appendEvent(Actions.PASS);
+    }
+
+    public void appendUndo() {
+        appendEvent(UNDO_EVENT);
+    }
+
+    public GameRules getRules() {
+        return rules;
+    }
+
+    // A new engine in the state this record ends in
+    public GameEngine replay() {
+        GameEngine engine = new GameEngine(rules, DiceSource.scripted());
+        replayInto(engine);
+        return engine;
+    }
+
+    // Applies every event to engine, which should be at the start of a game under the same rules
+    public void replayInto(GameEngine engine) {
+        Cursor cursor = new Cursor().reset(ByteBuffer.wrap(bytes), 0, length);
+        while (cursor.hasNext()) {
+            int event = cursor.next();
+            if (event == UNDO) {
+                engine.undoAction();
+            } else {
+                engine.applyAction(event);
+            }
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    // Encoded size in bytes, including the header
+    public int size() {
+        return length;
+    }
+
+    public int eventCount() {
+        return events;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder hex = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Decodes the events of one record in place, for example from a mapped
+     * archive, so reading allocates nothing once the cursor exists.
+     */
+    public static final class Cursor {
+        private final int[][] faces = new int[GameRules.MAX_DICE + 1][];
+        private GameRules rules;
+        private ByteBuffer data;
+        private int pos;
+        private int end;
+
+        // Positions the cursor on the record at data[offset, offset + length), checking its header
+        public Cursor reset(ByteBuffer data, int offset, int length) {
+            rules = readRules(data, offset, length);
+            if (faces[rules.dice()] == null) faces[rules.dice()] = new int[rules.dice()];
+            this.data = data;
+            this.pos = offset + headerSize(data.get(offset));
+            this.end = offset + length;
+            return this;
+        }
+
+        // Rules from the header of the current record
+        public GameRules rules() {
+            return rules;
+        }
+
+        public boolean hasNext() {
+            return pos < end;
+        }
+
+        // Next event as an Actions value, or UNDO
+        public int next() {
+            long event = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (pos >= end || shift > 35) {
+                    throw new IllegalArgumentException("Truncated event at byte " + pos);
+                }
+                b = data.get(pos++);
+                event |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return event == UNDO_EVENT ? UNDO : toAction(event, faces[rules.dice()]);
+        }
+    }
+
+    private static GameRules readRules(ByteBuffer data, int offset, int length) {
+        if (length >= 1 && data.get(offset) == VERSION) {
+            return GameRules.STANDARD;
+        }
+        if (length < 4 || data.get(offset) != RULES_VERSION) {
+            throw new IllegalArgumentException("Unsupported game record version");
+        }
+        return GameRules.of(data.get(offset + 1), data.get(offset + 2), data.get(offset + 3));
+    }
+
+    private static int headerSize(byte version) {
+        return version == VERSION ? 1 : 4;
+    }
+
+    private static int toAction(long event, int[] faces) {
+        switch ((int) event & 3) {
+            case Actions.ROLL:
+                // The engine ignores kept dice on the first roll but still records the mask
+                int keepMask = (int) (event >>> 3) & ((1 << faces.length) - 1);
+                digitsToFaces(event >>> (3 + faces.length), (event & FIRST_ROLL) != 0 ? 0 : keepMask, faces);
+                return Actions.roll(keepMask, faces);
+            case Actions.STOP:
+                return Actions.stop();
+            case Actions.PLACE:
+                return Actions.place((int) (event >>> 2));
+            default:
+                return Actions.pass();
+        }
+    }
+
+    private static long facesToDigits(int[] dice, int keepMask) {
+        long digits = 0;
+        for (int i = dice.length - 1; i >= 0; i--) {
+            if ((keepMask & (1 << i)) == 0) {
+                digits = digits * 6 + dice[i] - 1;
+            }
+        }
+        return digits;
+    }
+
+    private static void digitsToFaces(long digits, int keepMask, int[] faces) {
+        for (int i = 0; i < faces.length; i++) {
+            if ((keepMask & (1 << i)) != 0) {
+                faces[i] = 0;
+            } else {
+                faces[i] = (int) (digits % 6) + 1;
+                digits /= 6;
+            }
+        }
+    }
+
+    private void appendEvent(long value) {
+        if (length + 6 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+        events++;
+    }
+
+    private static int skipVarint(byte[] data, int pos) {
+        for (int i = 0; i < 6; i++) {
+            if (pos >= data.length) break;
+            if (data[pos++] >= 0) return pos;
+        }
+        throw new IllegalArgumentException("Truncated event at byte " + pos);
+    }
+}
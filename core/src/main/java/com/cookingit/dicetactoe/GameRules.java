@@ -0,0 +1,181 @@
+package com.cookingit.dicetactoe;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Board size, line length and number of dice, with everything the engine
+ * derives from them precomputed: a 64-bit mask per winning line, the lines
+ * through each cell and the cells each combination may use. Cell (row, col) is
+ * bit {@code row * size + col}, as in {@link Bitboard}, so boards up to 8x8 fit
+ * in a long. Instances are immutable and shared through {@link #of}.
+ *
+ * <p>Placement regions scale with the board: corners stay the four corners,
+ * edges are the other border cells, the center is the middle cell (the middle
+ * 2x2 on even boards) and the middle row and column widen the same way.
+ */
+public final class GameRules {
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 8;
+    public static final int MIN_DICE = 3;
+    public static final int MAX_DICE = 8;
+
+    private static final ConcurrentHashMap<Integer, GameRules> CACHE = new ConcurrentHashMap<>();
+
+    public static final GameRules STANDARD = of(Bitboard.SIZE, Bitboard.SIZE, DiceCombos.DICE);
+
+    private final int size;
+    private final int lineLength;
+    private final int dice;
+    private final int cells;
+    private final long full;
+    private final long[] lines;
+    private final int[][] linesThrough;
+    private final long[] allowed = new long[Combo.values().length];
+    // Consecutive faces that make a straight; 4 with five dice, as in DiceCombos
+    private final int straightRun;
+
+    private GameRules(int size, int lineLength, int dice) {
+        this.size = size;
+        this.lineLength = lineLength;
+        this.dice = dice;
+        this.cells = size * size;
+        this.full = cells == 64 ? -1L : (1L << cells) - 1;
+        this.straightRun = Math.min(4, dice);
+
+        // Rows, then columns, then both diagonals, matching Bitboard.LINES on the standard board
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        long[] found = new long[4 * cells];
+        int count = 0;
+        for (int[] d : directions) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int endRow = row + d[0] * (lineLength - 1);
+                    int endCol = col + d[1] * (lineLength - 1);
+                    if (endRow >= size || endCol < 0 || endCol >= size) continue;
+                    long line = 0;
+                    for (int i = 0; i < lineLength; i++) {
+                        line |= bit(row + d[0] * i, col + d[1] * i);
+                    }
+                    found[count++] = line;
+                }
+            }
+        }
+        lines = Arrays.copyOf(found, count);
+
+        linesThrough = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            int through = 0;
+            for (long line : lines) {
+                if ((line & (1L << cell)) != 0) through++;
+            }
+            linesThrough[cell] = new int[through];
+            for (int i = 0, n = 0; i < lines.length; i++) {
+                if ((lines[i] & (1L << cell)) != 0) linesThrough[cell][n++] = i;
+            }
+        }
+
+        int last = size - 1;
+        int lowMiddle = (size - 1) / 2;
+        int highMiddle = size / 2;
+        long corners = bit(0, 0) | bit(0, last) | bit(last, 0) | bit(last, last);
+        long border = 0;
+        long center = 0;
+        long middle = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                boolean middleRow = row == lowMiddle || row == highMiddle;
+                boolean middleCol = col == lowMiddle || col == highMiddle;
+                if (row == 0 || row == last || col == 0 || col == last) border |= bit(row, col);
+                if (middleRow && middleCol) center |= bit(row, col);
+                if (middleRow || middleCol) middle |= bit(row, col);
+            }
+        }
+        allowed[Combo.FIVE_OF_A_KIND.ordinal()] = full;
+        allowed[Combo.FOUR_OF_A_KIND.ordinal()] = full;
+        allowed[Combo.FULL_HOUSE.ordinal()] = corners | center;
+        allowed[Combo.STRAIGHT.ordinal()] = middle;
+        allowed[Combo.THREE_OF_A_KIND.ordinal()] = full & ~center;
+        allowed[Combo.TWO_PAIR.ordinal()] = corners;
+        allowed[Combo.ONE_PAIR.ordinal()] = border & ~corners;
+        allowed[Combo.ALL_DIFFERENT.ordinal()] = center;
+    }
+
+    // Rules for a size x size board, lineLength in a row to win, with the given number of dice
+    public static GameRules of(int size, int lineLength, int dice) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be " + MIN_SIZE + ".." + MAX_SIZE + ": " + size);
+        }
+        if (lineLength < MIN_SIZE || lineLength > size) {
+            throw new IllegalArgumentException("Line length must be " + MIN_SIZE + ".." + size + ": " + lineLength);
+        }
+        if (dice < MIN_DICE || dice > MAX_DICE) {
+            throw new IllegalArgumentException("Dice must be " + MIN_DICE + ".." + MAX_DICE + ": " + dice);
+        }
+        return CACHE.computeIfAbsent(size << 16 | lineLength << 8 | dice,
+                key -> new GameRules(size, lineLength, dice));
+    }
+
+    public int size() { return size; }
+    public int lineLength() { return lineLength; }
+    public int dice() { return dice; }
+    public int cells() { return cells; }
+    public long fullMask() { return full; }
+    public int lineCount() { return lines.length; }
+    public long line(int index) { return lines[index]; }
+
+    // Indices of the lines through cell; shared, do not modify
+    public int[] linesThrough(int cell) {
+        return linesThrough[cell];
+    }
+
+    public boolean isStandard() {
+        return this == STANDARD;
+    }
+
+    public int cell(int row, int col) {
+        return row * size + col;
+    }
+
+    public long bit(int row, int col) {
+        return 1L << cell(row, col);
+    }
+
+    // Cells this combination may be placed on, before removing occupied ones
+    public long allowedMask(Combo combo) {
+        return allowed[combo.ordinal()];
+    }
+
+    public boolean hasLine(long mask) {
+        for (long line : lines) {
+            if ((mask & line) == line) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Combination of the dice. Five dice use the DiceCombos table; any other
+     * count builds a histogram of 4-bit face counts in one pass over the dice
+     * and classifies that, so it never allocates.
+     */
+    public Combo classify(int[] faces) {
+        if (dice == DiceCombos.DICE) {
+            return DiceCombos.classify(faces);
+        }
+        long histogram = 0;
+        for (int i = 0; i < dice; i++) {
+            histogram += 1L << (4 * (faces[i] - 1));
+        }
+        return DiceCombos.classifyHistogram(histogram, straightRun);
+    }
+
+    // Combination of a histogram of this many dice, 4 bits per face as in DiceCombos.classifyHistogram
+    public Combo classifyHistogram(long histogram) {
+        return DiceCombos.classifyHistogram(histogram, straightRun);
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + ", " + lineLength + " in a row, " + dice + " dice";
+    }
+}
@@ -0,0 +1,22 @@
+package com.cookingit.dicetactoe;
+
+public enum Player {
+    X, O;
+
+    private static final Player[] VALUES = values();
+
+    public Player opponent() {
+        return this == X ? O : X;
+    }
+
+    public static Player fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    // Parses the "X"/"O" symbol used on the board and in Firebase, null if unknown
+    public static Player fromSymbol(String symbol) {
+        if ("X".equals(symbol)) return X;
+        if ("O".equals(symbol)) return O;
+        return null;
+    }
+}
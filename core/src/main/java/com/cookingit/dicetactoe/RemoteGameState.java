@@ -0,0 +1,29 @@
+package com.cookingit.dicetactoe;
+
+import java.util.List;
+
+/**
+ * Game state as received from another device. Implemented by the app's
+ * network model, so the engine can sync without knowing how it is stored.
+ */
+public interface RemoteGameState {
+    int getBoardMask(Player player);
+
+    // Player to move, or null if unknown
+    Player getCurrentPlayerValue();
+
+    // Five faces, 0 for a die that has not been rolled
+    List<Integer> getDiceAsList();
+
+    // Dice held by the player to move, bit i for die i, or -1 if the record does not say
+    default int getKeptMaskValue() {
+        return -1;
+    }
+
+    // Current combination, or null if none
+    Combo getComboValue();
+
+    boolean isPlayingStatus();
+
+    boolean isGameOverStatus();
+}
@@ -0,0 +1,31 @@
+package com.cookingit.dicetactoe;
+
+/**
+ * Returns a fixed list of faces in order, for tests and for replaying a
+ * recorded game.
+ */
+public final class ScriptedDiceSource implements DiceSource {
+    private final int[] faces;
+    private int next = 0;
+
+    public ScriptedDiceSource(int... faces) {
+        for (int face : faces) {
+            if (face < 1 || face > 6) {
+                throw new IllegalArgumentException("Die face out of range: " + face);
+            }
+        }
+        this.faces = faces.clone();
+    }
+
+    @Override
+    public int roll() {
+        if (next >= faces.length) {
+            throw new IllegalStateException("Scripted dice exhausted after " + faces.length + " rolls");
+        }
+        return faces[next++];
+    }
+
+    public int remaining() {
+        return faces.length - next;
+    }
+}
@@ -0,0 +1,54 @@
+package com.cookingit.dicetactoe;
+
+/**
+ * Reproducible dice from a 64-bit seed, using xoshiro128** seeded through
+ * SplitMix64. The same seed always gives the same sequence of faces, so a
+ * simulated game can be replayed exactly. Not thread-safe; give each thread
+ * or game its own instance.
+ */
+public final class SeededDiceSource implements DiceSource {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private int s0, s1, s2, s3;
+
+    public SeededDiceSource(long seed) {
+        long a = splitMix64(seed + GOLDEN_GAMMA);
+        long b = splitMix64(seed + 2 * GOLDEN_GAMMA);
+        s0 = (int) a;
+        s1 = (int) (a >>> 32);
+        s2 = (int) b;
+        s3 = (int) (b >>> 32);
+        if ((s0 | s1 | s2 | s3) == 0) {
+            s0 = 1; // xoshiro must not start from the all-zero state
+        }
+    }
+
+    @Override
+    public int roll() {
+        // Multiply-shift maps the 32-bit output onto 0..5 without a division
+        return (int) (((nextInt() & 0xFFFFFFFFL) * 6) >>> 32) + 1;
+    }
+
+    // Uniform in 0..bound-1, bound > 0
+    public int nextInt(int bound) {
+        return (int) (((nextInt() & 0xFFFFFFFFL) * bound) >>> 32);
+    }
+
+    public int nextInt() {
+        int result = Integer.rotateLeft(s1 * 5, 7) * 9;
+        int t = s1 << 9;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Integer.rotateLeft(s3, 11);
+        return result;
+    }
+
+    private static long splitMix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,132 @@
+package com.cookingit.dicetactoe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Encodings of engine state used by the online game records: players by
+ * symbol, combinations by key and winners as "X", "O" or "Draw".
+ *
+ * <p>The board and dice go on the wire as packed ints: the board with one
+ * base-3 digit per cell in 2 bits (0 empty, 1 X, 2 O), the dice with 3 bits
+ * per die (0 for a die that has not been rolled). Older records hold the
+ * board as a "row_col" -> "X"/"O" map of occupied cells and the dice as a
+ * map or list of faces; those still decode.
+ */
+public final class StateCodec {
+    public static final String DRAW = "Draw";
+
+    static final int CELL_BITS = 2;
+    static final int DIE_BITS = 3;
+
+    private static final Logger LOG = Logger.getLogger("StateCodec");
+
+    private StateCodec() {}
+
+    public static Map<String, String> encodeBoard(int xMask, int oMask) {
+        Map<String, String> boardMap = new HashMap<>();
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            int bit = 1 << cell;
+            // Only store occupied cells to save space
+            if ((xMask & bit) != 0) {
+                boardMap.put(cellKey(cell), Player.X.name());
+            } else if ((oMask & bit) != 0) {
+                boardMap.put(cellKey(cell), Player.O.name());
+            }
+        }
+        return boardMap;
+    }
+
+    // Decodes one player's occupancy mask, skipping entries it does not understand
+    public static int decodeBoardMask(Map<String, String> board, Player player) {
+        if (board == null) {
+            return 0;
+        }
+        int mask = 0;
+        for (Map.Entry<String, String> entry : board.entrySet()) {
+            Player owner = Player.fromSymbol(entry.getValue());
+            if (owner == null) {
+                LOG.warning("Ignoring unknown board value '" + entry.getValue() + "' at " + entry.getKey());
+                continue;
+            }
+            int cell = parseCell(entry.getKey());
+            if (cell < 0) {
+                LOG.warning("Ignoring unknown board key " + entry.getKey());
+                continue;
+            }
+            if (owner == player) {
+                mask |= 1 << cell;
+            }
+        }
+        return mask;
+    }
+
+    // 2 bits per cell: 1 for X, 2 for O
+    public static int packBoard(int xMask, int oMask) {
+        int packed = 0;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            int bit = 1 << cell;
+            if ((xMask & bit) != 0) {
+                packed |= 1 << (CELL_BITS * cell);
+            } else if ((oMask & bit) != 0) {
+                packed |= 2 << (CELL_BITS * cell);
+            }
+        }
+        return packed;
+    }
+
+    public static int unpackBoardMask(int packed, Player player) {
+        int digit = player == Player.X ? 1 : 2;
+        int mask = 0;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            if ((packed >>> (CELL_BITS * cell) & 3) == digit) {
+                mask |= 1 << cell;
+            }
+        }
+        return mask;
+    }
+
+    // 3 bits per die, die 0 lowest
+    public static int packDice(int[] dice) {
+        int packed = 0;
+        for (int i = 0; i < dice.length; i++) {
+            packed |= (dice[i] & 7) << (DIE_BITS * i);
+        }
+        return packed;
+    }
+
+    public static int unpackDie(int packed, int index) {
+        return packed >>> (DIE_BITS * index) & 7;
+    }
+
+    public static String cellKey(int row, int col) {
+        return row + "_" + col;
+    }
+
+    private static String cellKey(int cell) {
+        return cellKey(cell / Bitboard.SIZE, cell % Bitboard.SIZE);
+    }
+
+    private static int parseCell(String key) {
+        if (key == null || key.length() != 3 || key.charAt(1) != '_') return -1;
+        int row = key.charAt(0) - '0';
+        int col = key.charAt(2) - '0';
+        if (row < 0 || row >= Bitboard.SIZE || col < 0 || col >= Bitboard.SIZE) return -1;
+        return Bitboard.cell(row, col);
+    }
+
+    public static String encodePlayer(Player player) {
+        return player != null ? player.name() : null;
+    }
+
+    public static String encodeCombo(Combo combo) {
+        return combo != null ? combo.key() : "";
+    }
+
+    // "X", "O", "Draw" or null, as stored in previousWinner
+    public static String encodeWinner(Player winner, boolean draw) {
+        if (draw) return DRAW;
+        return encodePlayer(winner);
+    }
+}
@@ -0,0 +1,23 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.GameEngine;
+
+/**
+ * Decision maker for the computer player. Both calls look at the engine's
+ * current player and never change the engine.
+ */
+public interface AiPlayer {
+    // Keep mask meaning "stop rolling and place now" with the standard five dice
+    int STOP_ROLLING = ExpectiminimaxSolver.STOP_ROLLING;
+
+    // Dice to hold before the next roll, one bit per die position
+    int chooseKeepMask(GameEngine engine);
+
+    // Cell index (row * size + col) to place on, or -1 when no cell is legal
+    int chooseCell(GameEngine engine);
+
+    // Keep mask meaning "stop rolling and place now" under the engine's rules: every die kept
+    static int stopRolling(GameEngine engine) {
+        return (1 << engine.getDiceCount()) - 1;
+    }
+}
@@ -0,0 +1,92 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+
+/**
+ * Zobrist hashing of (mover, opponent) boards, canonicalised over the 8
+ * rotations and reflections of the board. Every placement region is invariant
+ * under those symmetries, so equivalent boards have the same game value and can
+ * share one transposition table entry.
+ */
+public final class BoardHash {
+    public static final int SYMMETRIES = 8;
+
+    // SYMMETRY_MASK[s][mask]: mask after applying symmetry s to the board
+    private static final short[][] SYMMETRY_MASK = new short[SYMMETRIES][1 << Bitboard.CELLS];
+    // MASK_KEY[side][mask]: XOR of the Zobrist keys of the cells in mask, side 0 = mover
+    private static final long[][] MASK_KEY = new long[2][1 << Bitboard.CELLS];
+    // Keys mixed in for positions inside a turn
+    private static final long[] ROLLS_KEY = new long[4];
+    private static final long[] DICE_KEY = new long[DiceMultisets.COUNT];
+
+    static {
+        int n = Bitboard.SIZE - 1;
+        for (int s = 0; s < SYMMETRIES; s++) {
+            int[] target = new int[Bitboard.CELLS];
+            for (int row = 0; row <= n; row++) {
+                for (int col = 0; col <= n; col++) {
+                    int r = row;
+                    int c = col;
+                    if ((s & 1) != 0) c = n - c;                   // mirror
+                    if ((s & 2) != 0) { r = n - r; c = n - c; }    // rotate 180
+                    if ((s & 4) != 0) { int t = r; r = c; c = t; } // transpose
+                    target[Bitboard.cell(row, col)] = Bitboard.cell(r, c);
+                }
+            }
+            for (int mask = 0; mask < SYMMETRY_MASK[s].length; mask++) {
+                int mapped = 0;
+                for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                    if ((mask & (1 << cell)) != 0) mapped |= 1 << target[cell];
+                }
+                SYMMETRY_MASK[s][mask] = (short) mapped;
+            }
+        }
+
+        // Fixed seed so hashes are stable between runs
+        long seed = 0x44696365546163L;
+        long[][] cellKey = new long[2][Bitboard.CELLS];
+        for (int side = 0; side < 2; side++) {
+            for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                cellKey[side][cell] = splitMix(seed += 0x9E3779B97F4A7C15L);
+            }
+            for (int mask = 1; mask < MASK_KEY[side].length; mask++) {
+                int low = Integer.numberOfTrailingZeros(mask);
+                MASK_KEY[side][mask] = MASK_KEY[side][mask & (mask - 1)] ^ cellKey[side][low];
+            }
+        }
+        for (int i = 0; i < ROLLS_KEY.length; i++) ROLLS_KEY[i] = splitMix(seed += 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < DICE_KEY.length; i++) DICE_KEY[i] = splitMix(seed += 0x9E3779B97F4A7C15L);
+    }
+
+    private BoardHash() {}
+
+    public static int transform(int symmetry, int mask) {
+        return SYMMETRY_MASK[symmetry][mask & Bitboard.FULL];
+    }
+
+    public static long hash(int mine, int theirs) {
+        return MASK_KEY[0][mine & Bitboard.FULL] ^ MASK_KEY[1][theirs & Bitboard.FULL];
+    }
+
+    // Smallest hash over the 8 symmetric images, the same for every equivalent board
+    public static long canonical(int mine, int theirs) {
+        long best = Long.MAX_VALUE;
+        for (int s = 0; s < SYMMETRIES; s++) {
+            long h = MASK_KEY[0][SYMMETRY_MASK[s][mine & Bitboard.FULL]]
+                    ^ MASK_KEY[1][SYMMETRY_MASK[s][theirs & Bitboard.FULL]];
+            if (h < best) best = h;
+        }
+        return best;
+    }
+
+    // Board hash extended with the rolls left and the dice multiset of a turn in progress
+    public static long withTurn(long boardHash, int rollsLeft, int multiset) {
+        return boardHash ^ ROLLS_KEY[rollsLeft] ^ DICE_KEY[multiset];
+    }
+
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
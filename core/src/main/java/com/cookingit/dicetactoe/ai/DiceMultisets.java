@@ -0,0 +1,214 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceCombos;
+
+/**
+ * Index of every multiset of 0..5 dice (462 of them, 252 with all five dice).
+ * Dice order never matters to the rules, so search and planning code works on
+ * multiset indices instead of the 7776 ordered rolls.
+ */
+public final class DiceMultisets {
+    public static final int DICE = DiceCombos.DICE;
+    public static final int FACES = DiceCombos.FACES;
+    public static final int COUNT = 462;
+    public static final int EMPTY = 0;
+
+    // counts[ms * FACES + f] = number of dice showing face f + 1
+    private static final byte[] COUNTS = new byte[COUNT * FACES];
+    private static final byte[] SIZE = new byte[COUNT];
+    // ADD[ms * FACES + f] = ms with one more die showing face f + 1, -1 when ms already holds 5 dice
+    private static final short[] ADD = new short[COUNT * FACES];
+    // Combo of each full multiset, by ordinal; -1 for partial ones
+    private static final byte[] COMBO = new byte[COUNT];
+    // Chance of rolling exactly this multiset when rolling SIZE[ms] dice
+    private static final double[] ROLL_PROBABILITY = new double[COUNT];
+    // Distinct sub-multisets (possible keeps) of each full multiset
+    private static final short[][] SUBSETS = new short[COUNT][];
+    // Full multiset for each packed roll, see DiceCombos.pack
+    private static final short[] BY_PACKED = new short[DiceCombos.PACKED_SIZE];
+    private static final short[] FULL = new short[252];
+
+    private static final int KEY_SPACE = 46656; // 6^6, counts as base-6 digits
+    private static final short[] BY_KEY = new short[KEY_SPACE];
+
+    static {
+        int[] counts = new int[FACES];
+        int next = 0;
+        int full = 0;
+        // Enumerate by size so that every multiset's index is above its subsets'
+        for (int size = 0; size <= DICE; size++) {
+            for (int key = 0; key < KEY_SPACE; key++) {
+                int rest = key;
+                int sum = 0;
+                for (int f = 0; f < FACES; f++) {
+                    counts[f] = rest % FACES;
+                    sum += counts[f];
+                    rest /= FACES;
+                }
+                if (sum != size) continue;
+                int ms = next++;
+                BY_KEY[key] = (short) ms;
+                SIZE[ms] = (byte) size;
+                for (int f = 0; f < FACES; f++) COUNTS[ms * FACES + f] = (byte) counts[f];
+                ROLL_PROBABILITY[ms] = multinomial(counts, size) / Math.pow(FACES, size);
+                COMBO[ms] = -1;
+                if (size == DICE) {
+                    COMBO[ms] = (byte) DiceCombos.classify(toDice(counts)).ordinal();
+                    FULL[full++] = (short) ms;
+                }
+            }
+        }
+        for (int ms = 0; ms < COUNT; ms++) {
+            int key = keyOf(ms);
+            int pow = 1;
+            for (int f = 0; f < FACES; f++, pow *= FACES) {
+                ADD[ms * FACES + f] = SIZE[ms] == DICE ? -1 : BY_KEY[key + pow];
+            }
+        }
+        for (int i = 0; i < FULL.length; i++) {
+            SUBSETS[FULL[i]] = enumerateSubsets(FULL[i]);
+        }
+        int[] dice = new int[DICE];
+        for (int packed = 0; packed < BY_PACKED.length; packed++) {
+            int rest = packed;
+            for (int i = 0; i < DICE; i++) {
+                dice[i] = rest % FACES + 1;
+                rest /= FACES;
+            }
+            BY_PACKED[packed] = (short) fromDice(dice);
+        }
+    }
+
+    private DiceMultisets() {}
+
+    public static int size(int ms) {
+        return SIZE[ms];
+    }
+
+    public static int count(int ms, int face) {
+        return COUNTS[ms * FACES + face - 1];
+    }
+
+    public static int add(int ms, int face) {
+        return ADD[ms * FACES + face - 1];
+    }
+
+    // Multiset holding the dice of both a and b, -1 if that is more than five dice
+    public static int union(int a, int b) {
+        if (SIZE[a] + SIZE[b] > DICE) return -1;
+        return BY_KEY[keyOf(a) + keyOf(b)];
+    }
+
+    public static Combo combo(int ms) {
+        return Combo.fromOrdinal(COMBO[ms]);
+    }
+
+    public static int comboOrdinal(int ms) {
+        return COMBO[ms];
+    }
+
+    public static double rollProbability(int ms) {
+        return ROLL_PROBABILITY[ms];
+    }
+
+    public static short[] subsets(int fullMs) {
+        return SUBSETS[fullMs];
+    }
+
+    public static short[] fullMultisets() {
+        return FULL;
+    }
+
+    public static int fromPacked(int packed) {
+        return BY_PACKED[packed];
+    }
+
+    // Multiset of the given faces (1..6); any number of dice up to five
+    public static int fromDice(int[] dice) {
+        int key = 0;
+        for (int die : dice) {
+            key += pow6(die - 1);
+        }
+        return BY_KEY[key];
+    }
+
+    /**
+     * Positions of {@code dice} to hold so that the held dice form {@code keep}.
+     * keep must be a sub-multiset of the dice.
+     */
+    public static int keepMask(int[] dice, int keep) {
+        int[] remaining = new int[FACES];
+        for (int f = 0; f < FACES; f++) remaining[f] = COUNTS[keep * FACES + f];
+        int mask = 0;
+        for (int i = 0; i < dice.length; i++) {
+            int f = dice[i] - 1;
+            if (remaining[f] > 0) {
+                remaining[f]--;
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // Multiset held by the dice selected in mask
+    public static int keptMultiset(int[] dice, int mask) {
+        int key = 0;
+        for (int i = 0; i < dice.length; i++) {
+            if ((mask & (1 << i)) != 0) key += pow6(dice[i] - 1);
+        }
+        return BY_KEY[key];
+    }
+
+    private static int keyOf(int ms) {
+        int key = 0;
+        for (int f = FACES - 1; f >= 0; f--) key = key * FACES + COUNTS[ms * FACES + f];
+        return key;
+    }
+
+    private static int pow6(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) result *= FACES;
+        return result;
+    }
+
+    private static short[] enumerateSubsets(int ms) {
+        int total = 1;
+        for (int f = 0; f < FACES; f++) total *= COUNTS[ms * FACES + f] + 1;
+        short[] result = new short[total];
+        int n = 0;
+        for (int i = 0; i < total; i++) {
+            int rest = i;
+            int key = 0;
+            int pow = 1;
+            for (int f = 0; f < FACES; f++, pow *= FACES) {
+                int options = COUNTS[ms * FACES + f] + 1;
+                key += (rest % options) * pow;
+                rest /= options;
+            }
+            result[n++] = BY_KEY[key];
+        }
+        return result;
+    }
+
+    private static int[] toDice(int[] counts) {
+        int[] dice = new int[DICE];
+        int i = 0;
+        for (int f = 0; f < FACES; f++) {
+            for (int c = 0; c < counts[f]; c++) dice[i++] = f + 1;
+        }
+        return dice;
+    }
+
+    private static double multinomial(int[] counts, int size) {
+        double result = factorial(size);
+        for (int count : counts) result /= factorial(count);
+        return result;
+    }
+
+    private static double factorial(int n) {
+        double result = 1;
+        for (int i = 2; i <= n; i++) result *= i;
+        return result;
+    }
+}
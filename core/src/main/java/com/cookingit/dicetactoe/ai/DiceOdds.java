@@ -0,0 +1,134 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.GameRules;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact dice probabilities for any number of dice, in the histogram form of
+ * {@link GameRules#classifyHistogram} (4 bits per face). For every count of
+ * rerolled dice it lists each distinct outcome with its chance, so expected
+ * values over a reroll sum over at most 1287 outcomes instead of 6^n rolls.
+ *
+ * <p>Also gives the chance of ending a turn on each combination for a player
+ * who always holds the largest group of equal dice and stops on four or five
+ * of a kind; search uses it as the model of turns it does not expand.
+ */
+final class DiceOdds {
+    static final int FACES = 6;
+    private static final int ROLLS_PER_TURN = 3;
+    private static final Combo[] COMBOS = Combo.values();
+    private static final ConcurrentHashMap<Integer, DiceOdds> CACHE = new ConcurrentHashMap<>();
+
+    // outcomes[n][i] and chances[n][i]: histogram and probability of outcome i when rolling n dice
+    private final long[][] outcomes;
+    private final double[][] chances;
+    private final double[] turnChance = new double[COMBOS.length];
+
+    private DiceOdds(GameRules rules) {
+        int dice = rules.dice();
+        outcomes = new long[dice + 1][];
+        chances = new double[dice + 1][];
+        for (int n = 0; n <= dice; n++) {
+            long[] found = new long[binomial(n + FACES - 1, FACES - 1)];
+            double[] p = new double[found.length];
+            enumerate(n, 0, 0L, 1, n, found, p, 0);
+            outcomes[n] = found;
+            chances[n] = p;
+        }
+
+        Map<Long, Double> states = new HashMap<>();
+        for (int i = 0; i < outcomes[dice].length; i++) states.put(outcomes[dice][i], chances[dice][i]);
+        for (int roll = 1; roll < ROLLS_PER_TURN; roll++) {
+            Map<Long, Double> next = new HashMap<>();
+            for (Map.Entry<Long, Double> state : states.entrySet()) {
+                long histogram = state.getKey();
+                Combo combo = rules.classifyHistogram(histogram);
+                if (combo == Combo.FIVE_OF_A_KIND || combo == Combo.FOUR_OF_A_KIND) {
+                    turnChance[combo.ordinal()] += state.getValue();
+                    continue;
+                }
+                long keep = largestGroup(histogram);
+                int rolled = dice - diceIn(keep);
+                for (int i = 0; i < outcomes[rolled].length; i++) {
+                    next.merge(keep + outcomes[rolled][i], state.getValue() * chances[rolled][i], Double::sum);
+                }
+            }
+            states = next;
+        }
+        for (Map.Entry<Long, Double> state : states.entrySet()) {
+            turnChance[rules.classifyHistogram(state.getKey()).ordinal()] += state.getValue();
+        }
+    }
+
+    // Shared odds for the dice of these rules; only the dice count matters
+    static DiceOdds of(GameRules rules) {
+        return CACHE.computeIfAbsent(rules.dice(), dice -> new DiceOdds(rules));
+    }
+
+    int outcomeCount(int rolled) {
+        return outcomes[rolled].length;
+    }
+
+    long outcome(int rolled, int index) {
+        return outcomes[rolled][index];
+    }
+
+    double chance(int rolled, int index) {
+        return chances[rolled][index];
+    }
+
+    // Chance that a turn ends on combo, by ordinal
+    double turnChance(int combo) {
+        return turnChance[combo];
+    }
+
+    static int count(long histogram, int face) {
+        return (int) (histogram >>> (4 * (face - 1))) & 0xF;
+    }
+
+    static int diceIn(long histogram) {
+        int total = 0;
+        for (int face = 1; face <= FACES; face++) total += count(histogram, face);
+        return total;
+    }
+
+    // All dice showing the most common face, the higher face on ties
+    static long largestGroup(long histogram) {
+        int best = FACES;
+        for (int face = FACES - 1; face >= 1; face--) {
+            if (count(histogram, face) > count(histogram, best)) best = face;
+        }
+        return (long) count(histogram, best) << (4 * (best - 1));
+    }
+
+    // Fills every multiset of n dice over faces from..6, with its multinomial chance
+    private static int enumerate(int left, int face, long histogram, double ways, int n,
+                                 long[] found, double[] p, int count) {
+        if (face == FACES - 1) {
+            found[count] = histogram + ((long) left << (4 * face));
+            p[count] = ways / factorial(left) / Math.pow(FACES, n) * factorial(n);
+            return count + 1;
+        }
+        for (int c = 0; c <= left; c++) {
+            count = enumerate(left - c, face + 1, histogram + ((long) c << (4 * face)),
+                    ways / factorial(c), n, found, p, count);
+        }
+        return count;
+    }
+
+    private static double factorial(int n) {
+        double result = 1;
+        for (int i = 2; i <= n; i++) result *= i;
+        return result;
+    }
+
+    private static int binomial(int n, int k) {
+        long result = 1;
+        for (int i = 1; i <= k; i++) result = result * (n - k + i) / i;
+        return (int) result;
+    }
+}
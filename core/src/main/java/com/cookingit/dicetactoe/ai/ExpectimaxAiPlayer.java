@@ -0,0 +1,29 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.GameEngine;
+
+/**
+ * Plays by {@link ExpectimaxSearch} within a fixed budget per decision, on any
+ * rules. Blocks for up to the budget, so call it off the UI thread.
+ */
+public class ExpectimaxAiPlayer implements AiPlayer {
+    private final ExpectimaxSearch search;
+
+    public ExpectimaxAiPlayer(long budgetMillis) {
+        this(new ExpectimaxSearch(budgetMillis));
+    }
+
+    public ExpectimaxAiPlayer(ExpectimaxSearch search) {
+        this.search = search;
+    }
+
+    @Override
+    public int chooseKeepMask(GameEngine engine) {
+        return search.chooseKeepMask(engine);
+    }
+
+    @Override
+    public int chooseCell(GameEngine engine) {
+        return search.chooseCell(engine);
+    }
+}
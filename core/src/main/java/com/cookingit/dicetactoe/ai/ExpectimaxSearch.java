@@ -0,0 +1,454 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.GameRules;
+import com.cookingit.dicetactoe.Player;
+
+/**
+ * Depth-limited expectimax for any {@link GameRules}, for boards where
+ * {@link ExpectiminimaxSolver} cannot enumerate every position.
+ *
+ * <p>Values are the mover's expected score, 1 for a win, 1/2 for a draw, as
+ * in the solver; positions at the depth limit get a heuristic in (0, 1) from
+ * the lines each side can still complete. One ply is one turn. A turn that is
+ * not expanded is a chance node over the combination it ends on, using the
+ * {@link DiceOdds} turn model; outcomes that leave the same legal cells are
+ * merged. The mover then places on the best legal cell, or passes.
+ *
+ * <p>Chance nodes use Star1 pruning: with values bounded by 0 and 1, the
+ * outcomes seen so far bound the expectation, and the search stops as soon as
+ * that bound leaves the window. Cells are tried winning move first, then the
+ * best cell stored in the {@link TranspositionTable}, then blocks, then by
+ * line potential. Iterative deepening repeats the search one ply deeper until
+ * the time budget runs out and keeps the result of the last finished depth.
+ *
+ * <p>Not thread-safe; one instance per AI player.
+ */
+public final class ExpectimaxSearch {
+    private static final int MAX_PLY = 64;
+    private static final int TABLE_CAPACITY = 1 << 18;
+    private static final int COMBOS = Combo.values().length;
+    // Bound types stored in the low 2 bits of a table entry's info; the best cell + 1 sits above them
+    private static final int EXACT = 1;
+    private static final int LOWER = 2;
+    private static final int UPPER = 3;
+    // Nodes between clock checks
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long budgetNanos;
+    private final int depthLimit;
+    private final TranspositionTable table = new TranspositionTable(TABLE_CAPACITY);
+
+    private GameRules rules;
+    private DiceOdds odds;
+    // Zobrist keys: zobrist[0][cell] for the mover's marks, zobrist[1][cell] for the opponent's
+    private long[][] zobrist;
+    // Line weights by marks in an otherwise empty line, and the scale that maps them into (0, 1)
+    private double[] lineWeight;
+    private double scale;
+
+    // Per-ply scratch space so the search never allocates
+    private final long[][] outcomeMasks = new long[MAX_PLY][COMBOS];
+    private final double[][] outcomeChances = new double[MAX_PLY][COMBOS];
+    private final int[][] moves = new int[MAX_PLY][];
+    private final int[][] moveScores = new int[MAX_PLY][];
+
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private int rootBest;
+    private int completedDepth;
+
+    /** @param budgetMillis wall-clock limit per decision */
+    public ExpectimaxSearch(long budgetMillis) {
+        this(budgetMillis, MAX_PLY / 2);
+    }
+
+    /**
+     * @param budgetMillis wall-clock limit per decision, 0 for no limit
+     * @param depthLimit   deepest iteration, in turns; with no time limit the
+     *                     search is deterministic
+     */
+    public ExpectimaxSearch(long budgetMillis, int depthLimit) {
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.depthLimit = Math.max(1, Math.min(depthLimit, MAX_PLY / 2));
+    }
+
+    // Depth reached by the last decision, in turns
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    // Nodes visited by the last decision
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    // Cell to place on for the engine's current combination, or -1 if none is legal
+    public int chooseCell(GameEngine engine) {
+        long valid = engine.getValidMoves();
+        if (valid == 0) return -1;
+        prepare(engine.getRules());
+        Player me = engine.getCurrentPlayer();
+        long mine = engine.getBoard(me);
+        long theirs = engine.getBoard(me.opponent());
+        if (Long.bitCount(valid) == 1) {
+            completedDepth = 0;
+            nodes = 0;
+            return Long.numberOfTrailingZeros(valid);
+        }
+
+        long hashA = hash(mine, theirs);
+        long hashB = hash(theirs, mine);
+        int best = Long.numberOfTrailingZeros(valid);
+        startClock();
+        for (int depth = 1; depth <= maxDepth(mine, theirs); depth++) {
+            rootBest = -1;
+            maxNode(mine, theirs, hashA, hashB, valid, depth, 0, 0, 1);
+            if (aborted) break;
+            best = rootBest;
+            completedDepth = depth;
+        }
+        return best;
+    }
+
+    /**
+     * Dice to hold before the next roll, or {@link AiPlayer#stopRolling} to
+     * place now. Every combination is valued by the search, then each way of
+     * holding dice is scored by the exact odds of the next roll. Later rolls
+     * are not looked at, so with two rolls left this slightly undervalues
+     * rolling on.
+     */
+    public int chooseKeepMask(GameEngine engine) {
+        if (!engine.hasDiceRolled() || engine.getRollsLeft() <= 0) return 0;
+        prepare(engine.getRules());
+        double[] values = comboValues(engine);
+
+        int dice = engine.getDiceCount();
+        long histogram = 0;
+        for (int i = 0; i < dice; i++) histogram += 1L << (4 * (engine.getDie(i) - 1));
+        // Holding everything is stopping, which wins ties
+        long bestKeep = histogram;
+        double bestValue = values[engine.getCurrentCombination().ordinal()];
+        for (long keep = 0; keep != histogram; keep = nextKeep(keep, histogram)) {
+            int rolled = dice - DiceOdds.diceIn(keep);
+            double expected = 0;
+            for (int i = 0; i < odds.outcomeCount(rolled); i++) {
+                Combo combo = rules.classifyHistogram(keep + odds.outcome(rolled, i));
+                expected += odds.chance(rolled, i) * values[combo.ordinal()];
+            }
+            if (expected > bestValue + 1e-9) {
+                bestValue = expected;
+                bestKeep = keep;
+            }
+        }
+        if (bestKeep == histogram) return AiPlayer.stopRolling(engine);
+
+        int mask = 0;
+        for (int i = 0; i < dice; i++) {
+            int face = engine.getDie(i);
+            if (DiceOdds.count(bestKeep, face) > 0) {
+                bestKeep -= 1L << (4 * (face - 1));
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // Next sub-multiset of histogram, counting each face from 0 up to its count like digits; ends on histogram
+    private static long nextKeep(long keep, long histogram) {
+        for (int face = 1; face <= DiceOdds.FACES; face++) {
+            if (DiceOdds.count(keep, face) < DiceOdds.count(histogram, face)) {
+                return keep + (1L << (4 * (face - 1)));
+            }
+            keep -= (long) DiceOdds.count(keep, face) << (4 * (face - 1));
+        }
+        return histogram;
+    }
+
+    // Mover's value of ending this turn on each combination, by ordinal
+    private double[] comboValues(GameEngine engine) {
+        Player me = engine.getCurrentPlayer();
+        long mine = engine.getBoard(me);
+        long theirs = engine.getBoard(me.opponent());
+        long empty = rules.fullMask() & ~(mine | theirs);
+        long hashA = hash(mine, theirs);
+        long hashB = hash(theirs, mine);
+        double[] values = new double[COMBOS];
+        double[] next = new double[COMBOS];
+        startClock();
+        for (int depth = 1; depth <= maxDepth(mine, theirs); depth++) {
+            for (int c = 0; c < COMBOS; c++) {
+                long allowed = rules.allowedMask(Combo.fromOrdinal(c)) & empty;
+                // Combinations with the same legal cells share a value
+                int same = c;
+                for (int prev = 0; prev < c; prev++) {
+                    if ((rules.allowedMask(Combo.fromOrdinal(prev)) & empty) == allowed) {
+                        same = prev;
+                        break;
+                    }
+                }
+                next[c] = same < c ? next[same] : maxNode(mine, theirs, hashA, hashB, allowed, depth, 1, 0, 1);
+                if (aborted) break;
+            }
+            if (aborted) break;
+            System.arraycopy(next, 0, values, 0, COMBOS);
+            completedDepth = depth;
+        }
+        return values;
+    }
+
+    /*
+     * Mover holds a combination whose legal cells are allowed. Window (alpha, beta)
+     * as in alpha-beta; a result outside it is only a bound. At ply 0 the best
+     * cell is left in rootBest.
+     */
+    private double maxNode(long mine, long theirs, long hashA, long hashB, long allowed,
+                           int depth, int ply, double alpha, double beta) {
+        if (allowed == 0) {
+            // No legal cell: the turn passes and the opponent moves on the same board
+            return 1 - chanceNode(theirs, mine, hashB, hashA, depth - 1, ply + 1, 1 - beta, 1 - alpha);
+        }
+        countNode();
+        long key = hashA ^ outcomeKey(allowed);
+        int info = table.infoOf(key);
+        int hinted = -1;
+        if (info >= 0) {
+            hinted = (info >>> 2) - 1;
+            if (ply > 0 && table.depthOf(key) >= depth) {
+                double stored = table.get(key);
+                int bound = info & 3;
+                if (bound == EXACT || (bound == LOWER && stored >= beta) || (bound == UPPER && stored <= alpha)) {
+                    return stored;
+                }
+            }
+        }
+
+        int count = orderMoves(mine, theirs, allowed, hinted, ply);
+        int[] cells = moves[ply];
+        if (isWin(mine, cells[0])) {
+            if (ply == 0) rootBest = cells[0];
+            return 1;
+        }
+        double originalAlpha = alpha;
+        double best = -1;
+        int bestCell = cells[0];
+        int filled = Long.bitCount(mine | theirs) + 1;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            double value;
+            if (filled == rules.cells()) {
+                value = 0.5;
+            } else {
+                long placed = mine | 1L << cell;
+                value = 1 - chanceNode(theirs, placed, hashB ^ zobrist[1][cell], hashA ^ zobrist[0][cell],
+                        depth - 1, ply + 1, 1 - beta, 1 - alpha);
+            }
+            if (aborted) return 0;
+            if (value > best) {
+                best = value;
+                bestCell = cell;
+                if (value > alpha) alpha = value;
+                if (value >= beta) break;
+            }
+        }
+        if (ply == 0) rootBest = bestCell;
+        int bound = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+        table.put(key, best, depth, bound | (bestCell + 1) << 2);
+        return best;
+    }
+
+    /*
+     * Mover is about to take a turn. Star1: with p the chance of an outcome and
+     * rest the chance still unexplored, each child gets the window that would
+     * let it move the expectation out of (alpha, beta) on its own.
+     */
+    private double chanceNode(long mine, long theirs, long hashA, long hashB,
+                              int depth, int ply, double alpha, double beta) {
+        if (depth == 0 || ply >= MAX_PLY - 1) return evaluate(mine, theirs);
+        countNode();
+        if (table.depthOf(hashA) >= depth) {
+            double stored = table.get(hashA);
+            int bound = table.infoOf(hashA) & 3;
+            if (bound == EXACT || (bound == LOWER && stored >= beta) || (bound == UPPER && stored <= alpha)) {
+                return stored;
+            }
+        }
+
+        int outcomes = groupOutcomes(mine | theirs, ply);
+        long[] masks = outcomeMasks[ply];
+        double[] chances = outcomeChances[ply];
+        double sum = 0;
+        double rest = 1;
+        for (int i = 0; i < outcomes; i++) {
+            double p = chances[i];
+            rest -= p;
+            double childAlpha = Math.max(0, (alpha - sum - rest) / p);
+            double childBeta = Math.min(1, (beta - sum) / p);
+            double value = maxNode(mine, theirs, hashA, hashB, masks[i], depth, ply, childAlpha, childBeta);
+            if (aborted) return 0;
+            sum += p * value;
+            if (sum >= beta) {
+                table.put(hashA, sum, depth, LOWER);
+                return sum;
+            }
+            if (sum + rest <= alpha) {
+                table.put(hashA, sum + rest, depth, UPPER);
+                return sum + rest;
+            }
+        }
+        table.put(hashA, sum, depth, EXACT);
+        return sum;
+    }
+
+    // Merges the turn outcomes by legal cells, most likely first; returns how many there are
+    private int groupOutcomes(long occupied, int ply) {
+        long[] masks = outcomeMasks[ply];
+        double[] chances = outcomeChances[ply];
+        int count = 0;
+        for (int c = 0; c < COMBOS; c++) {
+            double p = odds.turnChance(c);
+            if (p == 0) continue;
+            long allowed = rules.allowedMask(Combo.fromOrdinal(c)) & ~occupied;
+            int i = 0;
+            while (i < count && masks[i] != allowed) i++;
+            if (i == count) {
+                masks[count] = allowed;
+                chances[count++] = p;
+            } else {
+                chances[i] += p;
+            }
+        }
+        for (int i = 1; i < count; i++) {
+            for (int j = i; j > 0 && chances[j] > chances[j - 1]; j--) {
+                long m = masks[j];
+                masks[j] = masks[j - 1];
+                masks[j - 1] = m;
+                double p = chances[j];
+                chances[j] = chances[j - 1];
+                chances[j - 1] = p;
+            }
+        }
+        return count;
+    }
+
+    // Fills moves[ply] with the cells of allowed, best first; returns the count
+    private int orderMoves(long mine, long theirs, long allowed, int hinted, int ply) {
+        int[] cells = moves[ply];
+        int[] scores = moveScores[ply];
+        int count = 0;
+        for (long m = allowed; m != 0; m &= m - 1) {
+            int cell = Long.numberOfTrailingZeros(m);
+            int score;
+            if (isWin(mine, cell)) {
+                score = Integer.MAX_VALUE;
+            } else if (cell == hinted) {
+                score = Integer.MAX_VALUE - 1;
+            } else if (isWin(theirs, cell)) {
+                score = Integer.MAX_VALUE - 2;
+            } else {
+                score = 0;
+                for (int line : rules.linesThrough(cell)) {
+                    long mask = rules.line(line);
+                    int own = Long.bitCount(mask & mine);
+                    int other = Long.bitCount(mask & theirs);
+                    if (other == 0) score += 1 << (2 * own);
+                    if (own == 0) score += 1 << (2 * other);
+                }
+            }
+            int j = count++;
+            while (j > 0 && scores[j - 1] < score) {
+                cells[j] = cells[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            cells[j] = cell;
+            scores[j] = score;
+        }
+        return count;
+    }
+
+    // Lines only one side has marks in count for that side, weighted by how full they are
+    private double evaluate(long mine, long theirs) {
+        double score = 0;
+        for (int i = 0; i < rules.lineCount(); i++) {
+            long line = rules.line(i);
+            int own = Long.bitCount(line & mine);
+            int other = Long.bitCount(line & theirs);
+            if (other == 0) {
+                score += lineWeight[own];
+            } else if (own == 0) {
+                score -= lineWeight[other];
+            }
+        }
+        return 0.5 + 0.5 * score / (Math.abs(score) + scale);
+    }
+
+    private boolean isWin(long board, int cell) {
+        long marked = board | 1L << cell;
+        for (int line : rules.linesThrough(cell)) {
+            if ((marked & rules.line(line)) == rules.line(line)) return true;
+        }
+        return false;
+    }
+
+    // Each ply places at most one mark, so there is no point searching deeper than the empty cells
+    private int maxDepth(long mine, long theirs) {
+        return Math.min(depthLimit, rules.cells() - Long.bitCount(mine | theirs));
+    }
+
+    private void startClock() {
+        deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        aborted = false;
+        completedDepth = 0;
+        nodes = 0;
+    }
+
+    // Depth 1 always finishes, so every decision has a result
+    private void countNode() {
+        if (++nodes % CHECK_INTERVAL == 0 && completedDepth > 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+    }
+
+    private long hash(long mine, long theirs) {
+        long h = 0;
+        for (long m = mine; m != 0; m &= m - 1) h ^= zobrist[0][Long.numberOfTrailingZeros(m)];
+        for (long m = theirs; m != 0; m &= m - 1) h ^= zobrist[1][Long.numberOfTrailingZeros(m)];
+        return h;
+    }
+
+    private long outcomeKey(long allowed) {
+        return splitMix(allowed ^ 0x4F7574636F6D65L);
+    }
+
+    // Rebuilds the per-rules tables when the rules change
+    private void prepare(GameRules newRules) {
+        if (newRules == rules) return;
+        rules = newRules;
+        odds = DiceOdds.of(rules);
+        table.clear();
+        int cells = rules.cells();
+        zobrist = new long[2][cells];
+        long seed = 0x45787065637469L;
+        for (int side = 0; side < 2; side++) {
+            for (int cell = 0; cell < cells; cell++) zobrist[side][cell] = splitMix(seed += 0x9E3779B97F4A7C15L);
+        }
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            moves[ply] = new int[cells];
+            moveScores[ply] = new int[cells];
+        }
+        // A line one mark short of a win is worth four of one two short, and so on
+        int length = rules.lineLength();
+        lineWeight = new double[length + 1];
+        for (int marks = 1; marks < length; marks++) lineWeight[marks] = Math.pow(4, marks - 1);
+        scale = Math.pow(4, length - 1);
+    }
+
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
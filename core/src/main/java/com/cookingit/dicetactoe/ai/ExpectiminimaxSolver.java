@@ -0,0 +1,231 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceCombos;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.Player;
+
+/**
+ * Exact solution of standard Dice-Tac-Toe.
+ *
+ * <p>Values are the expected score of the player about to start a turn, counting a
+ * win as 1 and a draw as 1/2, so they read as a win probability with draws split
+ * evenly. A position is the pair (mover's marks, opponent's marks); the rules
+ * treat X and O alike, so who is X does not matter. Positions equal under the 8
+ * rotations and reflections of the board share one
+ * {@link TranspositionTable} entry, keyed by {@link BoardHash#canonical}.
+ *
+ * <p>Inside a turn only the final combination matters, so each position runs
+ * {@link TurnOptimizer} over the three rolls. A turn that ends without a legal
+ * cell hands the same board to the opponent, which couples (a, b) with (b, a).
+ * That pair is solved together by policy iteration: fix both keep policies,
+ * solve the resulting 2x2 linear system, re-optimise, and repeat until stable.
+ */
+public final class ExpectiminimaxSolver {
+    // Return value of bestKeepMask: hold every die, i.e. stop rolling and place
+    public static final int STOP_ROLLING = (1 << DiceCombos.DICE) - 1;
+
+    // About 2.5x the reachable positions up to symmetry; an evicted entry is just solved again
+    private static final int TABLE_CAPACITY = 4096;
+    private static final Combo[] COMBOS = Combo.values();
+
+    private static volatile ExpectiminimaxSolver instance;
+
+    private final TranspositionTable table = new TranspositionTable(TABLE_CAPACITY);
+    private final TurnOptimizer optimizer = new TurnOptimizer();
+    private long nodeCount = 0;
+
+    private ExpectiminimaxSolver() {}
+
+    // Returns the shared solver, solving the game on first use (about a second on a laptop)
+    public static ExpectiminimaxSolver getInstance() {
+        ExpectiminimaxSolver result = instance;
+        if (result == null) {
+            synchronized (ExpectiminimaxSolver.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ExpectiminimaxSolver();
+                    result.solve(0, 0);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // The shared solver if it has finished solving, otherwise null
+    public static ExpectiminimaxSolver getIfReady() {
+        return instance;
+    }
+
+    public int getSolvedPositionCount() {
+        return table.size();
+    }
+
+    // Positions evaluated so far, including re-evaluations after a table eviction
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    // Expected score for the player to move at the start of a turn
+    public synchronized double turnValue(int mine, int theirs) {
+        if (Bitboard.hasLine(mine)) return 1;
+        if (Bitboard.hasLine(theirs)) return 0;
+        if (Bitboard.isFull(mine | theirs)) return 0.5;
+        return solve(mine, theirs);
+    }
+
+    // Expected score for the current player of the engine, at whatever point of the turn it is
+    public synchronized double value(GameEngine engine) {
+        Player me = engine.getCurrentPlayer();
+        int mine = engine.getBoardMask(me);
+        int theirs = engine.getBoardMask(me.opponent());
+        if (engine.getGameState() == GameEngine.GameState.GAME_OVER) {
+            if (engine.isDraw()) return 0.5;
+            return engine.getWinner() == me ? 1 : 0;
+        }
+        if (!engine.hasDiceRolled()) {
+            return turnValue(mine, theirs);
+        }
+        prepareTurn(mine, theirs);
+        return optimizer.value(currentMultiset(engine), engine.getRollsLeft());
+    }
+
+    /**
+     * Dice to hold before the next roll, one bit per die position. Returns
+     * {@link #STOP_ROLLING} when the best play is to stop and place now.
+     */
+    public synchronized int bestKeepMask(GameEngine engine) {
+        if (!engine.hasDiceRolled() || engine.getRollsLeft() <= 0) {
+            return 0;
+        }
+        Player me = engine.getCurrentPlayer();
+        prepareTurn(engine.getBoardMask(me), engine.getBoardMask(me.opponent()));
+        int[] dice = engine.getDiceValues();
+        int ms = DiceMultisets.fromDice(dice);
+        int keep = optimizer.bestKeep(ms, engine.getRollsLeft());
+        if (keep == ms) return STOP_ROLLING;
+        return DiceMultisets.keepMask(dice, keep);
+    }
+
+    // Best cell index for the current combination, or -1 if none is legal
+    public synchronized int bestCell(GameEngine engine) {
+        Combo combo = engine.getCurrentCombination();
+        if (combo == null) return -1;
+        Player me = engine.getCurrentPlayer();
+        return bestCell(combo, engine.getBoardMask(me), engine.getBoardMask(me.opponent()));
+    }
+
+    public synchronized int bestCell(Combo combo, int mine, int theirs) {
+        int allowed = combo.allowedMask() & ~(mine | theirs) & Bitboard.FULL;
+        int best = -1;
+        double bestValue = -1;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            if ((allowed & (1 << cell)) == 0) continue;
+            double value = placementValue(mine, theirs, cell);
+            if (value > bestValue) {
+                best = cell;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    private static int currentMultiset(GameEngine engine) {
+        return DiceMultisets.fromDice(engine.getDiceValues());
+    }
+
+    // Loads the optimizer with the combination values of this position
+    private void prepareTurn(int mine, int theirs) {
+        double passValue = 1 - turnValue(theirs, mine);
+        double[] comboValue = new double[COMBOS.length];
+        double[] comboPass = new double[COMBOS.length];
+        fillComboValues(mine, theirs, placementValues(mine, theirs), passValue, comboValue, comboPass);
+        optimizer.evaluate(comboValue, comboPass);
+    }
+
+    private double solve(int mine, int theirs) {
+        long key = BoardHash.canonical(mine, theirs);
+        double cached = table.get(key);
+        if (!Double.isNaN(cached)) return cached;
+        nodeCount++;
+        long swappedKey = BoardHash.canonical(theirs, mine);
+
+        double[] placeA = placementValues(mine, theirs);
+        double[] placeB = placementValues(theirs, mine);
+        double[] comboValue = new double[COMBOS.length];
+        double[] comboPass = new double[COMBOS.length];
+
+        double valueA = 0.5;
+        double valueB = 0.5;
+        for (int iteration = 0; iteration < 100; iteration++) {
+            double passValueA = 1 - valueB;
+            fillComboValues(mine, theirs, placeA, passValueA, comboValue, comboPass);
+            optimizer.evaluate(comboValue, comboPass);
+            double passA = optimizer.turnPassChance();
+            double placedA = optimizer.turnValue() - passA * passValueA;
+
+            double passB = passA;
+            double placedB = placedA;
+            if (swappedKey != key) {
+                double passValueB = 1 - valueA;
+                fillComboValues(theirs, mine, placeB, passValueB, comboValue, comboPass);
+                optimizer.evaluate(comboValue, comboPass);
+                passB = optimizer.turnPassChance();
+                placedB = optimizer.turnValue() - passB * passValueB;
+            }
+
+            // valueA = placedA + passA * (1 - valueB) and the same with A and B swapped
+            double denominator = 1 - passA * passB;
+            double nextA = (placedA + passA * (1 - placedB - passB)) / denominator;
+            double nextB = (placedB + passB * (1 - placedA - passA)) / denominator;
+            boolean converged = Math.abs(nextA - valueA) < 1e-13 && Math.abs(nextB - valueB) < 1e-13;
+            valueA = nextA;
+            valueB = nextB;
+            if (converged) break;
+        }
+
+        // Deeper entries (more empty cells) are the costlier ones to recompute
+        int depth = Bitboard.CELLS - Integer.bitCount(mine | theirs);
+        table.put(key, valueA, depth);
+        if (swappedKey != key) table.put(swappedKey, valueB, depth);
+        return valueA;
+    }
+
+    // Worth to the mover of placing on each cell, NaN for occupied cells
+    private double[] placementValues(int mine, int theirs) {
+        double[] result = new double[Bitboard.CELLS];
+        int occupied = mine | theirs;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            result[cell] = (occupied & (1 << cell)) != 0 ? Double.NaN : placementValue(mine, theirs, cell);
+        }
+        return result;
+    }
+
+    private double placementValue(int mine, int theirs, int cell) {
+        int placed = mine | (1 << cell);
+        if (Bitboard.hasLine(placed)) return 1;
+        if (Bitboard.isFull(placed | theirs)) return 0.5;
+        return 1 - solve(theirs, placed);
+    }
+
+    private static void fillComboValues(int mine, int theirs, double[] placement, double passValue,
+                                        double[] comboValue, double[] comboPass) {
+        int empty = ~(mine | theirs) & Bitboard.FULL;
+        for (Combo combo : COMBOS) {
+            int allowed = combo.allowedMask() & empty;
+            double best = -1;
+            for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                if ((allowed & (1 << cell)) != 0 && placement[cell] > best) best = placement[cell];
+            }
+            if (allowed == 0) {
+                comboValue[combo.ordinal()] = passValue;
+                comboPass[combo.ordinal()] = 1;
+            } else {
+                comboValue[combo.ordinal()] = best;
+                comboPass[combo.ordinal()] = 0;
+            }
+        }
+    }
+}
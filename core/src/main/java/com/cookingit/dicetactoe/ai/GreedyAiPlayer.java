@@ -0,0 +1,115 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.GameRules;
+import com.cookingit.dicetactoe.Player;
+
+/**
+ * Keeps dice as {@link KeepAdvisor} suggests and places greedily: complete a
+ * line if possible, otherwise block the opponent's, otherwise play randomly.
+ *
+ * <p>KeepAdvisor only knows the standard rules, so on other boards and dice
+ * counts it stops as soon as the roll allows a winning cell or is four or
+ * five of a kind, and otherwise holds the most common face; with no win or
+ * block to make it plays the cell with the most potential in lines the
+ * opponent has not touched.
+ */
+public class GreedyAiPlayer implements AiPlayer {
+    private final AiPlayer fallback = new RandomAiPlayer();
+
+    @Override
+    public int chooseKeepMask(GameEngine engine) {
+        Player me = engine.getCurrentPlayer();
+        if (!engine.getRules().isStandard()) {
+            return chooseKeepMaskGeneric(engine, me);
+        }
+        return KeepAdvisor.bestKeepMask(engine.getDiceValues(), engine.getRollsLeft(),
+                engine.getBoardMask(me), engine.getBoardMask(me.opponent()));
+    }
+
+    @Override
+    public int chooseCell(GameEngine engine) {
+        Player me = engine.getCurrentPlayer();
+        if (!engine.getRules().isStandard()) {
+            return chooseCellGeneric(engine, me);
+        }
+        int valid = engine.getValidMoveMask();
+        int mine = engine.getBoardMask(me);
+        int theirs = engine.getBoardMask(me.opponent());
+        int block = -1;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            if ((valid & (1 << cell)) == 0) continue;
+            if (Bitboard.hasLine(mine | (1 << cell))) return cell;
+            if (block < 0 && Bitboard.hasLine(theirs | (1 << cell))) block = cell;
+        }
+        return block >= 0 ? block : fallback.chooseCell(engine);
+    }
+
+    private static int chooseKeepMaskGeneric(GameEngine engine, Player me) {
+        GameRules rules = engine.getRules();
+        Combo combo = engine.getCurrentCombination();
+        if (combo == Combo.FIVE_OF_A_KIND || combo == Combo.FOUR_OF_A_KIND) {
+            return AiPlayer.stopRolling(engine);
+        }
+        long open = rules.allowedMask(combo) & ~engine.getOccupied();
+        long mine = engine.getBoard(me);
+        for (long m = open; m != 0; m &= m - 1) {
+            if (completesLine(rules, mine, Long.numberOfTrailingZeros(m))) {
+                return AiPlayer.stopRolling(engine);
+            }
+        }
+
+        // Hold the most common face, the higher one on ties, and reroll the rest
+        long histogram = 0;
+        for (int i = 0; i < engine.getDiceCount(); i++) histogram += 1L << (4 * (engine.getDie(i) - 1));
+        int face = 6;
+        for (int f = 5; f >= 1; f--) {
+            if ((histogram >>> (4 * (f - 1)) & 0xF) > (histogram >>> (4 * (face - 1)) & 0xF)) face = f;
+        }
+        int keep = 0;
+        for (int i = 0; i < engine.getDiceCount(); i++) {
+            if (engine.getDie(i) == face) keep |= 1 << i;
+        }
+        return keep;
+    }
+
+    private static int chooseCellGeneric(GameEngine engine, Player me) {
+        GameRules rules = engine.getRules();
+        long valid = engine.getValidMoves();
+        long mine = engine.getBoard(me);
+        long theirs = engine.getBoard(me.opponent());
+        int block = -1;
+        int best = -1;
+        int bestScore = -1;
+        for (long m = valid; m != 0; m &= m - 1) {
+            int cell = Long.numberOfTrailingZeros(m);
+            if (completesLine(rules, mine, cell)) return cell;
+            if (block < 0 && completesLine(rules, theirs, cell)) block = cell;
+            // Lines still open to me count more the more of my marks they hold
+            int score = 0;
+            for (int line : rules.linesThrough(cell)) {
+                long mask = rules.line(line);
+                if ((mask & theirs) == 0) {
+                    int marks = Long.bitCount(mask & mine) + 1;
+                    score += marks * marks;
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = cell;
+            }
+        }
+        return block >= 0 ? block : best;
+    }
+
+    // Whether marking cell gives board a full line; only looks at the lines through cell
+    private static boolean completesLine(GameRules rules, long board, int cell) {
+        long marked = board | 1L << cell;
+        for (int line : rules.linesThrough(cell)) {
+            if ((marked & rules.line(line)) == rules.line(line)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,236 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceCombos;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Advice on which dice to hold between rolls, judged only by the combination
+ * the turn ends on. For each of the 32 keep masks it gives the chance of
+ * finishing on each combination, assuming later rolls in the turn are played
+ * the same way, and picks the mask that maximises the chance of a combination
+ * that wins on the spot, then of one that can be placed at all.
+ *
+ * <p>Backed by precomputed transition tables: for every kept multiset, the full
+ * multisets a reroll can reach with their probabilities, and the resulting
+ * combination distribution. On the last roll a mask is one table lookup; with
+ * more rolls left it is a dot product over the reachable multisets.
+ */
+public final class KeepAdvisor {
+    public static final int MASKS = 1 << DiceCombos.DICE;
+    public static final int KEEP_ALL = MASKS - 1;
+
+    // Weight of a combination that only allows a placement; it just breaks ties between masks
+    static final double PLACEABLE_WEIGHT = 1e-3;
+
+    private static final int COMBOS = Combo.values().length;
+    private static final int COUNT = DiceMultisets.COUNT;
+
+    // Full multisets reachable by keeping k and rolling the rest, with their probabilities
+    private static final short[][] TARGETS = new short[COUNT][];
+    private static final double[][] TARGET_PROBABILITY = new double[COUNT][];
+    // COMBO_DISTRIBUTION[k * COMBOS + c]: chance one reroll after keeping k ends on combo c
+    private static final double[] COMBO_DISTRIBUTION = new double[COUNT * COMBOS];
+
+    static {
+        // Rolled multisets grouped by how many dice they hold
+        int[] bySizeCount = new int[DiceMultisets.DICE + 1];
+        for (int ms = 0; ms < COUNT; ms++) bySizeCount[DiceMultisets.size(ms)]++;
+        int[][] bySize = new int[DiceMultisets.DICE + 1][];
+        for (int size = 0; size <= DiceMultisets.DICE; size++) bySize[size] = new int[bySizeCount[size]];
+        int[] filled = new int[DiceMultisets.DICE + 1];
+        for (int ms = 0; ms < COUNT; ms++) {
+            int size = DiceMultisets.size(ms);
+            bySize[size][filled[size]++] = ms;
+        }
+
+        for (int keep = 0; keep < COUNT; keep++) {
+            int[] rolls = bySize[DiceMultisets.DICE - DiceMultisets.size(keep)];
+            short[] targets = new short[rolls.length];
+            double[] probabilities = new double[rolls.length];
+            for (int i = 0; i < rolls.length; i++) {
+                targets[i] = (short) DiceMultisets.union(keep, rolls[i]);
+                probabilities[i] = DiceMultisets.rollProbability(rolls[i]);
+                COMBO_DISTRIBUTION[keep * COMBOS + DiceMultisets.comboOrdinal(targets[i])] += probabilities[i];
+            }
+            TARGETS[keep] = targets;
+            TARGET_PROBABILITY[keep] = probabilities;
+        }
+    }
+
+    // Rolls left up to which finalValues results are cached
+    private static final int CACHED_ROLLS = 2;
+    // Three weight levels per combination
+    private static final int WEIGHT_PATTERNS = (int) Math.pow(3, COMBOS);
+    // FINAL_VALUE_CACHE[(r - 1) * WEIGHT_PATTERNS + pattern]: finalValues(r, weights), filled lazily
+    private static final AtomicReferenceArray<double[]> FINAL_VALUE_CACHE =
+            new AtomicReferenceArray<>(CACHED_ROLLS * WEIGHT_PATTERNS);
+
+    private KeepAdvisor() {}
+
+    /**
+     * Worth of ending the turn on each combination for the player owning mine:
+     * 1 if it allows a cell that completes a line, {@link #PLACEABLE_WEIGHT} if it
+     * allows any empty cell, 0 otherwise.
+     */
+    public static double[] comboWeights(int mine, int theirs) {
+        int empty = ~(mine | theirs) & Bitboard.FULL;
+        int winning = 0;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            if ((empty & (1 << cell)) != 0 && Bitboard.hasLine(mine | (1 << cell))) winning |= 1 << cell;
+        }
+        double[] weights = new double[COMBOS];
+        for (Combo combo : Combo.values()) {
+            int allowed = combo.allowedMask() & empty;
+            if ((allowed & winning) != 0) {
+                weights[combo.ordinal()] = 1;
+            } else if (allowed != 0) {
+                weights[combo.ordinal()] = PLACEABLE_WEIGHT;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Chance of ending the turn on each combination for every keep mask.
+     * result[mask][comboOrdinal]; mask {@link #KEEP_ALL} stops rolling now.
+     *
+     * @param dice      current faces (1..6) of the five dice
+     * @param rollsLeft rolls still available, 1 or more
+     */
+    public static double[][] comboDistributions(int[] dice, int rollsLeft, double[] weights) {
+        double[][] finalDistribution = finalDistributions(rollsLeft - 1, weights);
+        double[][] result = new double[MASKS][];
+        double[][] byKeep = new double[COUNT][];
+        for (int mask = 0; mask < MASKS; mask++) {
+            int keep = DiceMultisets.keptMultiset(dice, mask);
+            if (mask == KEEP_ALL) {
+                result[mask] = new double[COMBOS];
+                result[mask][DiceMultisets.comboOrdinal(keep)] = 1;
+                continue;
+            }
+            if (byKeep[keep] == null) byKeep[keep] = rerollDistribution(keep, finalDistribution);
+            result[mask] = byKeep[keep];
+        }
+        return result;
+    }
+
+    // Mask with the best expected weight; KEEP_ALL when stopping is at least as good
+    public static int bestKeepMask(int[] dice, int rollsLeft, int mine, int theirs) {
+        if (rollsLeft <= 0) return KEEP_ALL;
+        double[] weights = comboWeights(mine, theirs);
+        // Only expected weights are needed here, not whole distributions
+        double[] next = finalValues(rollsLeft - 1, weights);
+        int best = KEEP_ALL;
+        double bestValue = weights[DiceMultisets.comboOrdinal(DiceMultisets.fromDice(dice))];
+        for (int mask = 0; mask < KEEP_ALL; mask++) {
+            double value = rerollValue(DiceMultisets.keptMultiset(dice, mask), next, weights);
+            if (value > bestValue + 1e-12) {
+                best = mask;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    static double dot(double[] distribution, double[] weights) {
+        return dot(distribution, 0, weights);
+    }
+
+    private static double dot(double[] distribution, int offset, double[] weights) {
+        double sum = 0;
+        for (int c = 0; c < COMBOS; c++) sum += distribution[offset + c] * weights[c];
+        return sum;
+    }
+
+    private static double[] rerollDistribution(int keep, double[][] finalDistribution) {
+        double[] result = new double[COMBOS];
+        if (finalDistribution == null) {
+            System.arraycopy(COMBO_DISTRIBUTION, keep * COMBOS, result, 0, COMBOS);
+            return result;
+        }
+        short[] targets = TARGETS[keep];
+        double[] probabilities = TARGET_PROBABILITY[keep];
+        for (int i = 0; i < targets.length; i++) {
+            double[] next = finalDistribution[targets[i]];
+            double p = probabilities[i];
+            for (int c = 0; c < COMBOS; c++) result[c] += p * next[c];
+        }
+        return result;
+    }
+
+    private static double rerollValue(int keep, double[] next, double[] weights) {
+        if (next == null) return dot(COMBO_DISTRIBUTION, keep * COMBOS, weights);
+        short[] targets = TARGETS[keep];
+        double[] probabilities = TARGET_PROBABILITY[keep];
+        double sum = 0;
+        for (int i = 0; i < targets.length; i++) sum += probabilities[i] * next[targets[i]];
+        return sum;
+    }
+
+    // Expected weight of each full multiset with rollsLeft more rolls, null when none are left
+    private static double[] finalValues(int rollsLeft, double[] weights) {
+        if (rollsLeft <= 0) return null;
+        if (rollsLeft > CACHED_ROLLS) return computeFinalValues(rollsLeft, weights);
+        // Weights only take three levels per combination, so results are cached per weight pattern
+        int pattern = 0;
+        for (int c = COMBOS - 1; c >= 0; c--) {
+            pattern = pattern * 3 + (weights[c] == 1 ? 2 : weights[c] > 0 ? 1 : 0);
+        }
+        int slot = (rollsLeft - 1) * WEIGHT_PATTERNS + pattern;
+        double[] result = FINAL_VALUE_CACHE.get(slot);
+        if (result == null) {
+            result = computeFinalValues(rollsLeft, weights);
+            FINAL_VALUE_CACHE.set(slot, result);
+        }
+        return result;
+    }
+
+    private static double[] computeFinalValues(int rollsLeft, double[] weights) {
+        double[] next = finalValues(rollsLeft - 1, weights);
+        double[] byKeep = new double[COUNT];
+        Arrays.fill(byKeep, Double.NaN);
+        double[] result = new double[COUNT];
+        for (short ms : DiceMultisets.fullMultisets()) {
+            double best = weights[DiceMultisets.comboOrdinal(ms)];
+            for (short keep : DiceMultisets.subsets(ms)) {
+                if (keep == ms) continue;
+                if (Double.isNaN(byKeep[keep])) byKeep[keep] = rerollValue(keep, next, weights);
+                if (byKeep[keep] > best) best = byKeep[keep];
+            }
+            result[ms] = best;
+        }
+        return result;
+    }
+
+    /**
+     * Final combination distribution of each full multiset when rollsLeft more
+     * rolls are played by the same rule, or null when no rolls are left (the
+     * distribution is then just the multiset's own combination).
+     */
+    private static double[][] finalDistributions(int rollsLeft, double[] weights) {
+        if (rollsLeft <= 0) return null;
+        double[][] next = finalDistributions(rollsLeft - 1, weights);
+        double[][] result = new double[COUNT][];
+        double[][] byKeep = new double[COUNT][];
+        for (short ms : DiceMultisets.fullMultisets()) {
+            double[] best = new double[COMBOS];
+            best[DiceMultisets.comboOrdinal(ms)] = 1;
+            double bestValue = weights[DiceMultisets.comboOrdinal(ms)];
+            for (short keep : DiceMultisets.subsets(ms)) {
+                if (keep == ms) continue;
+                if (byKeep[keep] == null) byKeep[keep] = rerollDistribution(keep, next);
+                double value = dot(byKeep[keep], weights);
+                if (value > bestValue + 1e-12) {
+                    best = byKeep[keep];
+                    bestValue = value;
+                }
+            }
+            result[ms] = best;
+        }
+        return result;
+    }
+}
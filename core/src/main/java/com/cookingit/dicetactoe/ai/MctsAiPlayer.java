@@ -0,0 +1,34 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.GameEngine;
+
+/**
+ * Plays by {@link MctsSearch} within a fixed budget per decision. Blocks for up
+ * to the budget, so call it off the UI thread.
+ */
+public class MctsAiPlayer implements AiPlayer {
+    private final MctsSearch search;
+
+    public MctsAiPlayer(long budgetMillis, int maxIterations) {
+        this(new MctsSearch(budgetMillis, maxIterations, MctsSearch.defaultThreads()));
+    }
+
+    public MctsAiPlayer(MctsSearch search) {
+        this.search = search;
+    }
+
+    @Override
+    public int chooseKeepMask(GameEngine engine) {
+        return search.chooseKeepMask(engine);
+    }
+
+    @Override
+    public int chooseCell(GameEngine engine) {
+        return search.chooseCell(engine);
+    }
+
+    // Stops the search worker threads
+    public void shutdown() {
+        search.shutdown();
+    }
+}
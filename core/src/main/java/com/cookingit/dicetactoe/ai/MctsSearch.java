@@ -0,0 +1,420 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.Player;
+import com.cookingit.dicetactoe.SeededDiceSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Monte Carlo Tree Search over game states, with chance nodes for dice rolls.
+ *
+ * <p>Decision nodes choose a kept multiset (holding everything means stop
+ * rolling) or a cell; chance nodes sample a reroll and branch on the resulting
+ * dice. Playouts keep the largest group of equal dice and place on a winning
+ * cell when there is one, otherwise at random.
+ *
+ * <p>Uses root parallelism: every worker grows its own tree from the same root
+ * and the root visit counts are summed at the end, so no locking is needed.
+ * Workers stop at the wall-clock deadline or when the iteration budget is used
+ * up. Each tree is capped at {@link #MAX_NODES_PER_TREE} nodes; past that
+ * iterations only refine existing nodes, so memory stays bounded.
+ *
+ * <p>If the calling thread is interrupted or the search is shut down before
+ * any tree is grown, the choose methods fall back to placing now and to no
+ * cell; callers should check the interrupt flag and drop the result.
+ */
+public final class MctsSearch {
+    static final int MAX_NODES_PER_TREE = 100_000;
+
+    private static final double EXPLORATION = 0.7;
+    private static final int ROLLS_PER_TURN = 3;
+    private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    // LARGEST_GROUP[ms]: the most common face of a full multiset, all its dice
+    private static final short[] LARGEST_GROUP = new short[DiceMultisets.COUNT];
+    // Cells allowed by each combination, by ordinal
+    private static final int[] ALLOWED = new int[Combo.values().length];
+
+    static {
+        for (short ms : DiceMultisets.fullMultisets()) {
+            int bestFace = 1;
+            for (int face = 2; face <= DiceMultisets.FACES; face++) {
+                if (DiceMultisets.count(ms, face) >= DiceMultisets.count(ms, bestFace)) bestFace = face;
+            }
+            int keep = DiceMultisets.EMPTY;
+            for (int i = 0; i < DiceMultisets.count(ms, bestFace); i++) keep = DiceMultisets.add(keep, bestFace);
+            LARGEST_GROUP[ms] = (short) keep;
+        }
+        for (Combo combo : Combo.values()) ALLOWED[combo.ordinal()] = combo.allowedMask();
+    }
+
+    private final long budgetNanos;
+    private final int maxIterations;
+    private final int threads;
+    private ExecutorService executor;
+    private volatile int lastIterations;
+
+    /**
+     * @param budgetMillis  wall-clock limit per decision, 0 for no limit
+     * @param maxIterations playouts per decision over all workers, 0 for no limit
+     *                      (at least one of the two must be set)
+     * @param threads       number of root-parallel workers
+     */
+    public MctsSearch(long budgetMillis, int maxIterations, int threads) {
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.maxIterations = maxIterations <= 0 ? NO_LIMIT : maxIterations;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Dice to hold before the next roll; AiPlayer.STOP_ROLLING to place now
+    public int chooseKeepMask(GameEngine engine) {
+        if (!engine.hasDiceRolled() || engine.getRollsLeft() <= 0) return 0;
+        int[] dice = engine.getDiceValues();
+        int ms = DiceMultisets.fromDice(dice);
+        int keep = search(engine, ms, engine.getRollsLeft());
+        if (keep < 0 || keep == ms) return AiPlayer.STOP_ROLLING;
+        return DiceMultisets.keepMask(dice, keep);
+    }
+
+    // Cell to place on, or -1 if none is legal
+    public int chooseCell(GameEngine engine) {
+        int valid = engine.getValidMoveMask();
+        if (valid == 0) return -1;
+        if (Integer.bitCount(valid) == 1) return Integer.numberOfTrailingZeros(valid);
+        return search(engine, DiceMultisets.fromDice(engine.getDiceValues()), 0);
+    }
+
+    // Playouts run by the last decision over all workers
+    int getLastIterations() {
+        return lastIterations;
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private int search(GameEngine engine, int ms, int rollsLeft) {
+        Player me = engine.getCurrentPlayer();
+        int mine = engine.getBoardMask(me);
+        int theirs = engine.getBoardMask(me.opponent());
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        int perWorker = maxIterations == NO_LIMIT ? NO_LIMIT : Math.max(1, maxIterations / threads);
+        long seed = System.nanoTime();
+        AtomicInteger iterations = new AtomicInteger();
+
+        List<Callable<Node>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            long workerSeed = seed + i * 0x9E3779B97F4A7C15L;
+            workers.add(() -> {
+                Node root = new Node(mine, theirs, me.ordinal(), ms, rollsLeft, false);
+                iterations.addAndGet(new Worker(workerSeed).run(root, deadline, perWorker));
+                return root;
+            });
+        }
+
+        List<Node> roots = new ArrayList<>(threads);
+        if (threads == 1) {
+            try {
+                roots.add(workers.get(0).call());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            try {
+                for (Future<Node> future : executor().invokeAll(workers)) roots.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (CancellationException | RejectedExecutionException e) {
+                // Shut down while searching: whatever finished is still usable
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        lastIterations = iterations.get();
+        return mostVisitedAction(roots);
+    }
+
+    private static int mostVisitedAction(List<Node> roots) {
+        int[] actions = null;
+        long[] visits = null;
+        for (Node root : roots) {
+            if (root.children == null) continue;
+            if (actions == null) {
+                actions = new int[root.childCount];
+                visits = new long[root.childCount];
+                for (int i = 0; i < root.childCount; i++) actions[i] = root.children[i].action;
+            }
+            // Every tree expands the root the same way, so children line up
+            for (int i = 0; i < root.childCount; i++) visits[i] += root.children[i].visits;
+        }
+        if (actions == null) return -1;
+        int best = 0;
+        for (int i = 1; i < actions.length; i++) {
+            if (visits[i] > visits[best]) best = i;
+        }
+        return actions[best];
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "mcts-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Decision node: the player to move holds the full multiset {@code dice}
+     * with {@code rollsLeft} rolls left, and places when rollsLeft is 0.
+     * Chance node: {@code dice} is the kept multiset about to be completed by a
+     * roll, after which {@code rollsLeft} rolls remain. Boards are from the
+     * point of view of {@code player}, who owns the node.
+     */
+    private static final class Node {
+        final int mine;
+        final int theirs;
+        final int player;
+        final int dice;
+        final int rollsLeft;
+        final boolean chance;
+        // Kept multiset, cell or rolled multiset that leads here from the parent
+        int action;
+        // X's score if the game is over here, NaN otherwise
+        double terminalScore = Double.NaN;
+        Node[] children;
+        int childCount;
+        int visits;
+        double scoreX;
+
+        Node(int mine, int theirs, int player, int dice, int rollsLeft, boolean chance) {
+            this.mine = mine;
+            this.theirs = theirs;
+            this.player = player;
+            this.dice = dice;
+            this.rollsLeft = rollsLeft;
+            this.chance = chance;
+        }
+
+        // Mean score for the given player (0 = X)
+        double mean(int forPlayer) {
+            double x = scoreX / visits;
+            return forPlayer == 0 ? x : 1 - x;
+        }
+
+        void add(Node child) {
+            if (children == null) {
+                children = new Node[4];
+            } else if (childCount == children.length) {
+                Node[] grown = new Node[childCount * 2];
+                System.arraycopy(children, 0, grown, 0, childCount);
+                children = grown;
+            }
+            children[childCount++] = child;
+        }
+    }
+
+    private static final class Worker {
+        private final SeededDiceSource random;
+        private final List<Node> path = new ArrayList<>();
+        private int nodes = 1;
+
+        Worker(long seed) {
+            this.random = new SeededDiceSource(seed);
+        }
+
+        // At least one iteration, so the root is always expanded; stops early on shutdown
+        int run(Node root, long deadline, int iterations) {
+            int i = 0;
+            do {
+                iterate(root);
+            } while (++i < iterations && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted());
+            return i;
+        }
+
+        private void iterate(Node root) {
+            path.clear();
+            Node node = root;
+            path.add(node);
+            double result;
+            while (true) {
+                if (!Double.isNaN(node.terminalScore)) {
+                    result = node.terminalScore;
+                    break;
+                }
+                if (node.chance) {
+                    int outcome = rollOnto(node.dice);
+                    Node child = findChild(node, outcome);
+                    if (child == null && nodes < MAX_NODES_PER_TREE) {
+                        child = new Node(node.mine, node.theirs, node.player, outcome, node.rollsLeft, false);
+                        child.action = outcome;
+                        node.add(child);
+                        nodes++;
+                        path.add(child);
+                        result = playout(child.mine, child.theirs, child.player, outcome, child.rollsLeft);
+                        break;
+                    } else if (child == null) {
+                        result = playout(node.mine, node.theirs, node.player, outcome, node.rollsLeft);
+                        break;
+                    }
+                    node = child;
+                    path.add(node);
+                    continue;
+                }
+                if (node.children == null) {
+                    if (nodes >= MAX_NODES_PER_TREE && node != root) {
+                        result = playout(node.mine, node.theirs, node.player, node.dice, node.rollsLeft);
+                        break;
+                    }
+                    expand(node);
+                }
+                Node child = select(node);
+                path.add(child);
+                if (child.visits == 0 && Double.isNaN(child.terminalScore)) {
+                    result = child.chance
+                            ? playout(child.mine, child.theirs, child.player, rollOnto(child.dice), child.rollsLeft)
+                            : playout(child.mine, child.theirs, child.player, child.dice, child.rollsLeft);
+                    break;
+                }
+                node = child;
+            }
+            for (int i = 0; i < path.size(); i++) {
+                Node n = path.get(i);
+                n.visits++;
+                n.scoreX += result;
+            }
+        }
+
+        private void expand(Node node) {
+            if (node.rollsLeft > 0) {
+                for (short keep : DiceMultisets.subsets(node.dice)) {
+                    Node child = keep == node.dice
+                            ? new Node(node.mine, node.theirs, node.player, node.dice, 0, false)
+                            : new Node(node.mine, node.theirs, node.player, keep, node.rollsLeft - 1, true);
+                    child.action = keep;
+                    node.add(child);
+                }
+            } else {
+                int allowed = ALLOWED[DiceMultisets.comboOrdinal(node.dice)] & ~(node.mine | node.theirs) & Bitboard.FULL;
+                if (allowed == 0) {
+                    // No legal cell: the turn passes with the board unchanged
+                    Node child = new Node(node.theirs, node.mine, 1 - node.player, DiceMultisets.EMPTY, ROLLS_PER_TURN - 1, true);
+                    child.action = -1;
+                    node.add(child);
+                }
+                for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                    if ((allowed & (1 << cell)) == 0) continue;
+                    int placed = node.mine | (1 << cell);
+                    Node child = new Node(node.theirs, placed, 1 - node.player, DiceMultisets.EMPTY, ROLLS_PER_TURN - 1, true);
+                    child.action = cell;
+                    if (Bitboard.hasLine(placed)) {
+                        child.terminalScore = node.player == 0 ? 1 : 0;
+                    } else if (Bitboard.isFull(placed | node.theirs)) {
+                        child.terminalScore = 0.5;
+                    }
+                    node.add(child);
+                }
+            }
+            nodes += node.childCount;
+        }
+
+        private Node select(Node node) {
+            double logVisits = Math.log(Math.max(1, node.visits));
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < node.childCount; i++) {
+                Node child = node.children[i];
+                if (child.visits == 0) return child;
+                double score = child.mean(node.player) + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (score > bestScore) {
+                    best = child;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        private static Node findChild(Node node, int action) {
+            for (int i = 0; i < node.childCount; i++) {
+                if (node.children[i].action == action) return node.children[i];
+            }
+            return null;
+        }
+
+        // Completes a kept multiset to five dice with random faces
+        private int rollOnto(int keep) {
+            int ms = keep;
+            for (int i = DiceMultisets.size(keep); i < DiceMultisets.DICE; i++) {
+                ms = DiceMultisets.add(ms, random.roll());
+            }
+            return ms;
+        }
+
+        // Plays to the end from a decision point and returns X's score
+        private double playout(int mine, int theirs, int player, int ms, int rollsLeft) {
+            while (true) {
+                int empty = ~(mine | theirs) & Bitboard.FULL;
+                int winning = winningCells(mine, empty);
+                while (rollsLeft > 0 && (ALLOWED[DiceMultisets.comboOrdinal(ms)] & winning) == 0) {
+                    ms = rollOnto(LARGEST_GROUP[ms]);
+                    rollsLeft--;
+                }
+                int allowed = ALLOWED[DiceMultisets.comboOrdinal(ms)] & empty;
+                if (allowed != 0) {
+                    int cell;
+                    if ((allowed & winning) != 0) {
+                        cell = Integer.numberOfTrailingZeros(allowed & winning);
+                    } else {
+                        cell = pickCell(allowed);
+                    }
+                    mine |= 1 << cell;
+                    if (Bitboard.hasLine(mine)) return player == 0 ? 1 : 0;
+                    if (Bitboard.isFull(mine | theirs)) return 0.5;
+                }
+                int swap = mine;
+                mine = theirs;
+                theirs = swap;
+                player = 1 - player;
+                ms = rollOnto(DiceMultisets.EMPTY);
+                rollsLeft = ROLLS_PER_TURN - 1;
+            }
+        }
+
+        private int pickCell(int allowed) {
+            int pick = random.nextInt(Integer.bitCount(allowed));
+            int mask = allowed;
+            for (int i = 0; i < pick; i++) mask &= mask - 1;
+            return Integer.numberOfTrailingZeros(mask);
+        }
+
+        private static int winningCells(int mine, int empty) {
+            int result = 0;
+            for (int line : Bitboard.LINES) {
+                int missing = line & ~mine;
+                if (Integer.bitCount(missing) == 1 && (missing & empty) != 0) result |= missing;
+            }
+            return result;
+        }
+    }
+}
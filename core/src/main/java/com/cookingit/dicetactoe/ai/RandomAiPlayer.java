@@ -0,0 +1,23 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.GameEngine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Rerolls everything and places on a random legal cell
+public class RandomAiPlayer implements AiPlayer {
+    @Override
+    public int chooseKeepMask(GameEngine engine) {
+        return 0;
+    }
+
+    @Override
+    public int chooseCell(GameEngine engine) {
+        long mask = engine.getValidMoves();
+        int count = Long.bitCount(mask);
+        if (count == 0) return -1;
+        int pick = ThreadLocalRandom.current().nextInt(count);
+        while (pick-- > 0) mask &= mask - 1;
+        return Long.numberOfTrailingZeros(mask);
+    }
+}
@@ -0,0 +1,230 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.GameRecord;
+import com.cookingit.dicetactoe.Player;
+import com.cookingit.dicetactoe.SeededDiceSource;
+import com.cookingit.dicetactoe.archive.GameArchive;
+import com.cookingit.dicetactoe.archive.GameArchiveWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many games between two AI policies without any UI, spread over a
+ * fork/join pool. Game i always uses the dice seeded from (seed, i), so the
+ * rolls do not depend on the thread count; the policies draw on their own
+ * unseeded randomness, so results only repeat exactly for deterministic ones
+ * (solver, expectimax). Each leaf task creates its own players through the
+ * factories, so policies need not be thread-safe.
+ *
+ * <p>Run from the command line with: games, X policy, O policy, [seed],
+ * [archive file]. Policies are random, greedy, mcts (single-threaded, 200
+ * playouts), expectimax (3 turns deep) and solver. With an archive file every game is also recorded into
+ * a {@link GameArchive}, in completion order.
+ */
+public final class SelfPlaySimulator {
+    // Games per leaf task; large enough that splitting costs nothing next to playing
+    private static final int LEAF_GAMES = 512;
+    // Bound on turns per game; dice make every game end long before this
+    private static final int MAX_TURNS = 10_000;
+
+    public interface PlayerFactory {
+        AiPlayer create();
+    }
+
+    public static final class Stats {
+        public long games;
+        public long xWins;
+        public long oWins;
+        public long draws;
+        public long turns;
+        public long passes;
+        // Combination each placing turn ended on, by ordinal
+        public final long[] comboCounts = new long[Combo.values().length];
+        public long elapsedNanos;
+
+        void add(Stats other) {
+            games += other.games;
+            xWins += other.xWins;
+            oWins += other.oWins;
+            draws += other.draws;
+            turns += other.turns;
+            passes += other.passes;
+            for (int i = 0; i < comboCounts.length; i++) comboCounts[i] += other.comboCounts[i];
+        }
+
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+
+        // X win rate minus O win rate; X always moves first
+        public double firstPlayerAdvantage() {
+            return games == 0 ? 0 : (double) (xWins - oWins) / games;
+        }
+
+        public double drawRate() {
+            return games == 0 ? 0 : (double) draws / games;
+        }
+
+        @Override
+        public String toString() {
+            if (games == 0) return "0 games" + System.lineSeparator();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%d games in %.2f s (%.0f games/s)%n",
+                    games, elapsedNanos / 1e9, gamesPerSecond()));
+            sb.append(String.format(Locale.US, "X wins %.4f, O wins %.4f, draws %.4f, first-player advantage %+.4f%n",
+                    (double) xWins / games, (double) oWins / games, drawRate(), firstPlayerAdvantage()));
+            sb.append(String.format(Locale.US, "%.2f turns per game, %.4f of turns passed%n",
+                    (double) turns / games, (double) passes / turns));
+            long placed = 0;
+            for (long count : comboCounts) placed += count;
+            for (Combo combo : Combo.values()) {
+                sb.append(String.format(Locale.US, "  %-16s %.4f%n",
+                        combo.key(), (double) comboCounts[combo.ordinal()] / Math.max(1, placed)));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final PlayerFactory playerX;
+    private final PlayerFactory playerO;
+    private GameArchiveWriter archive;
+
+    public SelfPlaySimulator(PlayerFactory playerX, PlayerFactory playerO) {
+        this.playerX = playerX;
+        this.playerO = playerO;
+    }
+
+    // Records every game played from now on into writer; null stops recording
+    public void setArchive(GameArchiveWriter writer) {
+        this.archive = writer;
+    }
+
+    public Stats run(int games, long seed) {
+        return run(games, seed, ForkJoinPool.commonPool());
+    }
+
+    public Stats run(int games, long seed, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        Stats stats = pool.invoke(new Batch(seed, 0, games));
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    public static PlayerFactory policy(String name) {
+        switch (name) {
+            case "random":
+                return RandomAiPlayer::new;
+            case "greedy":
+                return GreedyAiPlayer::new;
+            case "mcts":
+                return () -> new MctsAiPlayer(new MctsSearch(0, 200, 1));
+            case "expectimax":
+                return () -> new ExpectimaxAiPlayer(new ExpectimaxSearch(0, 3));
+            case "solver":
+                ExpectiminimaxSolver.getInstance();
+                return SolverAiPlayer::new;
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + name);
+        }
+    }
+
+    // Plays one game to the end and records it into stats
+    static void playGame(GameEngine engine, AiPlayer x, AiPlayer o, Stats stats) {
+        for (int turn = 0; turn < MAX_TURNS && engine.getGameState() != GameEngine.GameState.GAME_OVER; turn++) {
+            AiPlayer player = engine.getCurrentPlayer() == Player.X ? x : o;
+            stats.turns++;
+            boolean noMoves = engine.rollDice();
+            while (!noMoves && engine.getRollsLeft() > 0) {
+                int keepMask = player.chooseKeepMask(engine);
+                if (keepMask == AiPlayer.stopRolling(engine)) {
+                    noMoves = engine.skipRolls();
+                    break;
+                }
+                engine.setKeptMask(keepMask);
+                noMoves = engine.rollDice();
+            }
+            if (noMoves) {
+                stats.passes++;
+                engine.makeMove(-1, -1);
+                continue;
+            }
+            stats.comboCounts[engine.getCurrentCombination().ordinal()]++;
+            int cell = player.chooseCell(engine);
+            engine.makeMove(cell / engine.getRules().size(), cell % engine.getRules().size());
+        }
+        stats.games++;
+        if (engine.isDraw()) {
+            stats.draws++;
+        } else if (engine.getWinner() == Player.X) {
+            stats.xWins++;
+        } else if (engine.getWinner() == Player.O) {
+            stats.oWins++;
+        }
+    }
+
+    private final class Batch extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        Batch(long seed, int from, int to) {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from > LEAF_GAMES) {
+                int mid = (from + to) >>> 1;
+                Batch left = new Batch(seed, from, mid);
+                left.fork();
+                Stats stats = new Batch(seed, mid, to).compute();
+                stats.add(left.join());
+                return stats;
+            }
+            Stats stats = new Stats();
+            AiPlayer x = playerX.create();
+            AiPlayer o = playerO.create();
+            for (int i = from; i < to; i++) {
+                GameEngine engine = new GameEngine(new SeededDiceSource(seed + i * 0x9E3779B97F4A7C15L));
+                if (archive != null) engine.setRecord(new GameRecord());
+                playGame(engine, x, o, stats);
+                if (archive != null) {
+                    try {
+                        archive.append(engine.getRecord());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String x = args.length > 1 ? args[1] : "greedy";
+        String o = args.length > 2 ? args[2] : "greedy";
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+        SelfPlaySimulator simulator = new SelfPlaySimulator(policy(x), policy(o));
+        System.out.println(x + " (X) vs " + o + " (O) on " + ForkJoinPool.commonPool().getParallelism() + " threads");
+        if (args.length > 4) {
+            try (GameArchiveWriter writer = new GameArchiveWriter(Paths.get(args[4]))) {
+                simulator.setArchive(writer);
+                System.out.print(simulator.run(games, seed));
+            }
+        } else {
+            System.out.print(simulator.run(games, seed));
+        }
+    }
+}
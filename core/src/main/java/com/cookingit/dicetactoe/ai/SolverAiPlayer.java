@@ -0,0 +1,24 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.GameEngine;
+
+/**
+ * Plays the exact solution. Until the solver has finished (see
+ * {@link ExpectiminimaxSolver#getIfReady()}) it falls back to random play so the
+ * UI never waits on the solve.
+ */
+public class SolverAiPlayer implements AiPlayer {
+    private final AiPlayer fallback = new RandomAiPlayer();
+
+    @Override
+    public int chooseKeepMask(GameEngine engine) {
+        ExpectiminimaxSolver solver = ExpectiminimaxSolver.getIfReady();
+        return solver == null ? fallback.chooseKeepMask(engine) : solver.bestKeepMask(engine);
+    }
+
+    @Override
+    public int chooseCell(GameEngine engine) {
+        ExpectiminimaxSolver solver = ExpectiminimaxSolver.getIfReady();
+        return solver == null ? fallback.chooseCell(engine) : solver.bestCell(engine);
+    }
+}
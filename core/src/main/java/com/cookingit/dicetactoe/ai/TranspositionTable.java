@@ -0,0 +1,116 @@
+package com.cookingit.dicetactoe.ai;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table from 64-bit position keys to values, for search and
+ * solving. Storage is three primitive arrays allocated up front, so memory
+ * stays flat however many positions are visited.
+ *
+ * <p>Each key may live in one of two adjacent slots. When both are taken by
+ * other keys, the entry with the smaller depth (the smaller subtree, cheaper to
+ * recompute) is replaced; on equal depth the newer entry wins. Not thread-safe.
+ *
+ * <p>Each entry also carries a small caller-defined info value, which
+ * depth-limited search uses for the bound type and best move.
+ */
+public final class TranspositionTable {
+    private final long[] keys;
+    private final double[] values;
+    // Depth + 1, so 0 marks an empty slot
+    private final byte[] depths;
+    private final short[] infos;
+    private final int mask;
+    private int size = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    // capacity is rounded up to a power of two, at least 2
+    public TranspositionTable(int capacity) {
+        int slots = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        keys = new long[slots];
+        values = new double[slots];
+        depths = new byte[slots];
+        infos = new short[slots];
+        mask = slots - 1;
+    }
+
+    // Stored value, or NaN if the key is not in the table
+    public double get(long key) {
+        int slot = indexOf(key);
+        if (depths[slot] != 0 && keys[slot] == key) {
+            hits++;
+            return values[slot];
+        }
+        int other = slot ^ 1;
+        if (depths[other] != 0 && keys[other] == key) {
+            hits++;
+            return values[other];
+        }
+        misses++;
+        return Double.NaN;
+    }
+
+    // Depth the key was stored with, or -1 if the key is not in the table
+    public int depthOf(long key) {
+        int slot = indexOf(key);
+        if (depths[slot] != 0 && keys[slot] == key) return depths[slot] - 1;
+        int other = slot ^ 1;
+        if (depths[other] != 0 && keys[other] == key) return depths[other] - 1;
+        return -1;
+    }
+
+    // Info stored with the key, or -1 if the key is not in the table
+    public int infoOf(long key) {
+        int slot = indexOf(key);
+        if (depths[slot] != 0 && keys[slot] == key) return infos[slot];
+        int other = slot ^ 1;
+        if (depths[other] != 0 && keys[other] == key) return infos[other];
+        return -1;
+    }
+
+    // depth must be in 0..126
+    public void put(long key, double value, int depth) {
+        put(key, value, depth, 0);
+    }
+
+    // info must be in 0..32767
+    public void put(long key, double value, int depth, int info) {
+        int slot = indexOf(key);
+        int other = slot ^ 1;
+        int target;
+        if (depths[slot] != 0 && keys[slot] == key) {
+            target = slot;
+        } else if (depths[other] != 0 && keys[other] == key) {
+            target = other;
+        } else if (depths[slot] == 0) {
+            target = slot;
+        } else if (depths[other] == 0) {
+            target = other;
+        } else {
+            target = depths[other] <= depths[slot] ? other : slot;
+        }
+        if (depths[target] == 0) size++;
+        keys[target] = key;
+        values[target] = value;
+        depths[target] = (byte) (depth + 1);
+        infos[target] = (short) info;
+    }
+
+    public void clear() {
+        Arrays.fill(depths, (byte) 0);
+        size = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return keys.length; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    private int indexOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
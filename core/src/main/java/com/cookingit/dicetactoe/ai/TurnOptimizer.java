@@ -0,0 +1,93 @@
+package com.cookingit.dicetactoe.ai;
+
+/**
+ * Best keep policy for one turn when the outcome only depends on the final
+ * combination. Given what each combination is worth, it works backwards over
+ * the three rolls: keeping a partial multiset and rerolling the rest is the
+ * average over the next die's face, so every level is a pass over the 462
+ * multisets. Also tracks the chance of ending on a combination flagged as a
+ * pass under the chosen policy, which the solver needs. Not thread-safe.
+ */
+final class TurnOptimizer {
+    static final int ROLLS = 3;
+
+    private static final int COUNT = DiceMultisets.COUNT;
+
+    // value[r][ms]: worth of holding full multiset ms with r rolls left, playing on optimally
+    private final double[][] value = new double[ROLLS][COUNT];
+    private final double[][] passChance = new double[ROLLS][COUNT];
+    private final short[][] bestKeep = new short[ROLLS][COUNT];
+    // expected[r][k]: worth of keeping k and rolling the other dice, with r rolls left before that roll
+    private final double[][] expected = new double[ROLLS + 1][COUNT];
+    private final double[][] expectedPass = new double[ROLLS + 1][COUNT];
+
+    /**
+     * @param comboValue worth of ending the turn on each combination, by ordinal
+     * @param comboPass  1 for combinations that leave no legal cell, else 0
+     */
+    void evaluate(double[] comboValue, double[] comboPass) {
+        short[] full = DiceMultisets.fullMultisets();
+        for (short ms : full) {
+            int combo = DiceMultisets.comboOrdinal(ms);
+            value[0][ms] = comboValue[combo];
+            passChance[0][ms] = comboPass[combo];
+            bestKeep[0][ms] = ms;
+        }
+        for (int r = 1; r <= ROLLS; r++) {
+            double[] e = expected[r];
+            double[] ep = expectedPass[r];
+            double[] v = value[r - 1];
+            double[] vp = passChance[r - 1];
+            // Multisets are indexed by size, so every add(ms, f) is above ms
+            for (int ms = COUNT - 1; ms >= 0; ms--) {
+                if (DiceMultisets.size(ms) == DiceMultisets.DICE) {
+                    e[ms] = v[ms];
+                    ep[ms] = vp[ms];
+                    continue;
+                }
+                double sum = 0;
+                double sumPass = 0;
+                for (int face = 1; face <= DiceMultisets.FACES; face++) {
+                    int next = DiceMultisets.add(ms, face);
+                    sum += e[next];
+                    sumPass += ep[next];
+                }
+                e[ms] = sum / DiceMultisets.FACES;
+                ep[ms] = sumPass / DiceMultisets.FACES;
+            }
+            if (r == ROLLS) break;
+            for (short ms : full) {
+                // Keeping everything comes first, so ties favour rolling fewer dice
+                int best = ms;
+                double bestValue = e[ms];
+                for (short keep : DiceMultisets.subsets(ms)) {
+                    if (e[keep] > bestValue + 1e-12) {
+                        best = keep;
+                        bestValue = e[keep];
+                    }
+                }
+                value[r][ms] = bestValue;
+                passChance[r][ms] = ep[best];
+                bestKeep[r][ms] = (short) best;
+            }
+        }
+    }
+
+    // Worth of a turn that has not rolled yet
+    double turnValue() {
+        return expected[ROLLS][DiceMultisets.EMPTY];
+    }
+
+    double turnPassChance() {
+        return expectedPass[ROLLS][DiceMultisets.EMPTY];
+    }
+
+    double value(int fullMs, int rollsLeft) {
+        return value[rollsLeft][fullMs];
+    }
+
+    // Multiset to keep before the next roll; fullMs itself means stop rolling
+    int bestKeep(int fullMs, int rollsLeft) {
+        return bestKeep[rollsLeft][fullMs];
+    }
+}
@@ -0,0 +1,76 @@
+package com.cookingit.dicetactoe.archive;
+
+import com.cookingit.dicetactoe.Combo;
+
+import java.util.Locale;
+
+/**
+ * Aggregates over the games of a {@link GameArchive}. Games whose events break
+ * the rules, or that do not reach game over, count as invalid and are left out
+ * of every other figure.
+ */
+public final class ArchiveStats {
+    // Turns from this index on share the last row of comboByTurn
+    public static final int TRACKED_TURNS = 16;
+
+    public long games;
+    public long invalid;
+    public long xWins;
+    public long oWins;
+    public long draws;
+    public long turns;
+    public long passes;
+    // comboByTurn[turn][ordinal] counts the combination each placing turn ended on
+    public final long[][] comboByTurn = new long[TRACKED_TURNS][Combo.values().length];
+
+    void add(ArchiveStats other) {
+        games += other.games;
+        invalid += other.invalid;
+        xWins += other.xWins;
+        oWins += other.oWins;
+        draws += other.draws;
+        turns += other.turns;
+        passes += other.passes;
+        for (int t = 0; t < TRACKED_TURNS; t++) {
+            for (int c = 0; c < comboByTurn[t].length; c++) comboByTurn[t][c] += other.comboByTurn[t][c];
+        }
+    }
+
+    // Share of valid games won by X, who always moves first
+    public double firstPlayerWinRate() {
+        return games == 0 ? 0 : (double) xWins / games;
+    }
+
+    public double averageTurns() {
+        return games == 0 ? 0 : (double) turns / games;
+    }
+
+    // Share of the placements made on turn (0-based, capped at TRACKED_TURNS - 1) that used combo
+    public double comboFrequency(int turn, Combo combo) {
+        long[] row = comboByTurn[Math.min(turn, TRACKED_TURNS - 1)];
+        long placed = 0;
+        for (long count : row) placed += count;
+        return placed == 0 ? 0 : (double) row[combo.ordinal()] / placed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%d games, %d invalid%n", games, invalid));
+        sb.append(String.format(Locale.US, "X (first player) wins %.4f, O wins %.4f, draws %.4f%n",
+                firstPlayerWinRate(), (double) oWins / Math.max(1, games), (double) draws / Math.max(1, games)));
+        sb.append(String.format(Locale.US, "%.2f turns per game, %.4f of turns passed%n",
+                averageTurns(), (double) passes / Math.max(1, turns)));
+        sb.append("turn");
+        for (Combo combo : Combo.values()) sb.append(String.format(Locale.US, " %9.9s", combo.key()));
+        sb.append(String.format("%n"));
+        for (int t = 0; t < TRACKED_TURNS; t++) {
+            sb.append(String.format(Locale.US, "%3d%s", t + 1, t == TRACKED_TURNS - 1 ? "+" : " "));
+            for (Combo combo : Combo.values()) {
+                sb.append(String.format(Locale.US, " %9.4f", comboFrequency(t, combo)));
+            }
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+}
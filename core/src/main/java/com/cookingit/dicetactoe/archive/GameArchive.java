@@ -0,0 +1,276 @@
+package com.cookingit.dicetactoe.archive;
+
+import com.cookingit.dicetactoe.Actions;
+import com.cookingit.dicetactoe.DiceSource;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.GameRecord;
+import com.cookingit.dicetactoe.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Read-only view of an archive of finished games, memory-mapped so records are
+ * decoded straight from the page cache and never copied onto the heap.
+ *
+ * <p>File layout, big-endian:
+ * <pre>
+ *   int   magic "DTTA"
+ *   int   version
+ *   long  game count n
+ *   long  file offset of the data section
+ *   long  index[n + 1]  start of each record in the data section, then its end
+ *   byte  data[]        GameRecord bytes, back to back
+ * </pre>
+ * {@link #analyze} splits the games into segments over a fork/join pool. Each
+ * segment maps only its own slice of the data, so the data section may be
+ * larger than one mapping allows, and replays its games through a
+ * {@link GameEngine} to validate them against the rules. Index entries that
+ * point outside the data section count as invalid games.
+ */
+public final class GameArchive implements Closeable {
+    static final int MAGIC = 0x44545441; // "DTTA"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    // The index is mapped as one buffer
+    static final int MAX_GAMES = (Integer.MAX_VALUE - HEADER_SIZE) / 8 - 1;
+    // Games per segment; a segment maps a few MB at most
+    private static final int SEGMENT_GAMES = 1 << 16;
+
+    private final FileChannel channel;
+    private final LongBuffer index;
+    private final long dataOffset;
+    private final int count;
+
+    private GameArchive(FileChannel channel, LongBuffer index, long dataOffset, int count) {
+        this.channel = channel;
+        this.index = index;
+        this.dataOffset = dataOffset;
+        this.count = count;
+    }
+
+    public static GameArchive open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a game archive: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported game archive version " + version);
+            }
+            long count = header.getLong();
+            long dataOffset = header.getLong();
+            if (count < 0 || count > MAX_GAMES || dataOffset != HEADER_SIZE + 8 * (count + 1)
+                    || dataOffset > channel.size()) {
+                throw new IOException("Corrupt game archive header: " + path);
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 8 * (count + 1));
+            return new GameArchive(channel, index.asLongBuffer(), dataOffset, (int) count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Copies one record onto the heap, for inspecting single games
+    public GameRecord get(int game) throws IOException {
+        long start = index.get(game);
+        long end = index.get(game + 1);
+        if (start < 0 || end < start || end - start > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt game archive index at game " + game);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, dataOffset + start + bytes.position()) < 0) {
+                throw new IOException("Game archive truncated in game " + game);
+            }
+        }
+        return GameRecord.fromBytes(bytes.array());
+    }
+
+    public ArchiveStats analyze() {
+        return analyze(ForkJoinPool.commonPool());
+    }
+
+    public ArchiveStats analyze(ForkJoinPool pool) {
+        return pool.invoke(new Segment(0, count));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private final class Segment extends RecursiveTask<ArchiveStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Segment(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ArchiveStats compute() {
+            if (to - from > SEGMENT_GAMES) {
+                int mid = (from + to) >>> 1;
+                Segment left = new Segment(from, mid);
+                left.fork();
+                ArchiveStats stats = new Segment(mid, to).compute();
+                stats.add(left.join());
+                return stats;
+            }
+            ArchiveStats stats = new ArchiveStats();
+            if (from == to) return stats;
+            long dataSize;
+            try {
+                dataSize = channel.size() - dataOffset;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Map only the span of records that lie inside the file, so a corrupt entry cannot fail the mapping
+            long base = Long.MAX_VALUE;
+            long limit = 0;
+            for (int i = from; i < to; i++) {
+                if (inFile(i, dataSize)) {
+                    base = Math.min(base, index.get(i));
+                    limit = Math.max(limit, index.get(i + 1));
+                }
+            }
+            if (base > limit) {
+                stats.invalid += to - from;
+                return stats;
+            }
+            limit = Math.min(limit, base + Integer.MAX_VALUE);
+            MappedByteBuffer data;
+            try {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + base, limit - base);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            GameRecord.Cursor cursor = new GameRecord.Cursor();
+            Replay replay = new Replay();
+            for (int i = from; i < to; i++) {
+                long start = index.get(i);
+                long end = index.get(i + 1);
+                boolean valid = false;
+                if (inFile(i, dataSize) && end <= limit) {
+                    try {
+                        valid = replay.run(cursor.reset(data, (int) (start - base), (int) (end - start)), stats);
+                    } catch (IllegalArgumentException e) {
+                        valid = false; // bad version or truncated event
+                    }
+                }
+                if (!valid) stats.invalid++;
+            }
+            return stats;
+        }
+
+        // Whether game i's index entries describe a range inside the data section
+        private boolean inFile(int i, long dataSize) {
+            long start = index.get(i);
+            long end = index.get(i + 1);
+            return start >= 0 && start <= end && end <= dataSize;
+        }
+    }
+
+    /*
+     * Replays games one at a time, keeping every applied action on a stack so an
+     * undo can drop it again. A placement stores its combination ordinal, a pass
+     * PASSED and any other action NOT_A_TURN.
+     */
+    private static final class Replay {
+        private static final int NOT_A_TURN = -2;
+        private static final int PASSED = -1;
+
+        private final GameEngine engine = new GameEngine(DiceSource.scripted());
+        private int[] played = new int[64];
+        private int size;
+
+        // Adds the game to stats when every event is legal and the game ends; false otherwise
+        boolean run(GameRecord.Cursor cursor, ArchiveStats stats) {
+            engine.setRules(cursor.rules()); // starts a new game, reallocating only if the rules differ
+            size = 0;
+            while (cursor.hasNext()) {
+                int action = cursor.next();
+                if (action == GameRecord.UNDO) {
+                    if (size == 0 || !engine.undoAction()) return false;
+                    size--;
+                    continue;
+                }
+                if (!engine.isLegalAction(action)) return false;
+                int entry = NOT_A_TURN;
+                if (Actions.type(action) == Actions.PLACE) {
+                    entry = engine.getCurrentCombination().ordinal();
+                } else if (Actions.type(action) == Actions.PASS) {
+                    entry = PASSED;
+                }
+                engine.applyAction(action);
+                if (size == played.length) {
+                    played = Arrays.copyOf(played, size * 2);
+                }
+                played[size++] = entry;
+            }
+            if (engine.getGameState() != GameEngine.GameState.GAME_OVER) return false;
+
+            stats.games++;
+            if (engine.isDraw()) {
+                stats.draws++;
+            } else if (engine.getWinner() == Player.X) {
+                stats.xWins++;
+            } else {
+                stats.oWins++;
+            }
+            int turn = 0;
+            for (int i = 0; i < size; i++) {
+                if (played[i] == NOT_A_TURN) continue;
+                if (played[i] == PASSED) {
+                    stats.passes++;
+                } else {
+                    stats.comboByTurn[Math.min(turn, ArchiveStats.TRACKED_TURNS - 1)][played[i]]++;
+                }
+                turn++;
+            }
+            stats.turns += turn;
+            return true;
+        }
+    }
+
+    // Prints the aggregates of the archive given as the only argument
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: GameArchive <archive file>");
+            return;
+        }
+        try (GameArchive archive = open(Paths.get(args[0]))) {
+            long start = System.nanoTime();
+            ArchiveStats stats = archive.analyze();
+            System.out.printf("Analysed %d games in %.2f s on %d threads%n", archive.size(),
+                    (System.nanoTime() - start) / 1e9, ForkJoinPool.commonPool().getParallelism());
+            System.out.print(stats);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.cookingit.dicetactoe.archive;
+
+import com.cookingit.dicetactoe.GameRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link GameArchive} file. Records are appended to a temporary file
+ * next to the target while only their offsets stay in memory; close writes the
+ * header and index and then copies the records after them. append is
+ * synchronized so parallel producers can share one writer.
+ */
+public final class GameArchiveWriter implements Closeable {
+    private final Path path;
+    private final Path dataPath;
+    private final OutputStream data;
+    // offsets[i] is where record i starts in the data section; one extra entry marks the end
+    private long[] offsets = new long[1024];
+    private int count = 0;
+    private long written = 0;
+    private boolean closed = false;
+
+    public GameArchiveWriter(Path path) throws IOException {
+        this.path = path;
+        this.dataPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.data = new BufferedOutputStream(Files.newOutputStream(dataPath), 1 << 16);
+    }
+
+    public synchronized void append(GameRecord record) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Archive already closed");
+        }
+        if (count == GameArchive.MAX_GAMES) {
+            throw new IllegalStateException("Archive is full at " + count + " games");
+        }
+        if (count + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[count++] = written;
+        record.writeTo(data);
+        written += record.size();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        data.close();
+        offsets[count] = written;
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel in = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(GameArchive.HEADER_SIZE);
+            header.putInt(GameArchive.MAGIC);
+            header.putInt(GameArchive.VERSION);
+            header.putLong(count);
+            header.putLong(GameArchive.HEADER_SIZE + 8L * (count + 1));
+            header.flip();
+            writeFully(out, header);
+
+            ByteBuffer index = ByteBuffer.allocate(8 * 4096);
+            for (int i = 0; i <= count; i++) {
+                if (!index.hasRemaining()) {
+                    index.flip();
+                    writeFully(out, index);
+                    index.clear();
+                }
+                index.putLong(offsets[i]);
+            }
+            index.flip();
+            writeFully(out, index);
+
+            long position = out.position();
+            for (long copied = 0; copied < written; ) {
+                copied += out.transferFrom(in, position + copied, written - copied);
+            }
+        } finally {
+            Files.deleteIfExists(dataPath);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
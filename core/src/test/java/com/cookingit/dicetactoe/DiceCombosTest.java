@@ -0,0 +1,70 @@
+package com.cookingit.dicetactoe;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DiceCombosTest {
+
+    @Test
+    public void table_matchesMapBasedClassifier() {
+        int[] dice = new int[DiceCombos.DICE];
+        for (int packed = 0; packed < DiceCombos.PACKED_SIZE; packed++) {
+            int rest = packed;
+            for (int i = 0; i < dice.length; i++) {
+                dice[i] = rest % DiceCombos.FACES + 1;
+                rest /= DiceCombos.FACES;
+            }
+            assertEquals(packed, DiceCombos.pack(dice));
+            assertEquals("dice " + Arrays.toString(dice),
+                    referenceCombination(dice), DiceCombos.classify(packed).key());
+        }
+    }
+
+    @Test
+    public void classify_knownHands() {
+        assertEquals(Combo.FIVE_OF_A_KIND, DiceCombos.classify(new int[]{4, 4, 4, 4, 4}));
+        assertEquals(Combo.FULL_HOUSE, DiceCombos.classify(new int[]{2, 5, 2, 5, 2}));
+        assertEquals(Combo.STRAIGHT, DiceCombos.classify(new int[]{3, 1, 4, 2, 4}));
+        assertEquals(Combo.TWO_PAIR, DiceCombos.classify(new int[]{1, 1, 6, 6, 3}));
+        assertEquals(Combo.ALL_DIFFERENT, DiceCombos.classify(new int[]{1, 2, 3, 5, 6}));
+    }
+
+    // The original HashMap implementation from GameEngine, kept as the reference
+    private static String referenceCombination(int[] dice) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int die : dice) {
+            counts.merge(die, 1, Integer::sum);
+        }
+        if (counts.containsValue(5)) return "five_of_a_kind";
+        if (counts.containsValue(4)) return "four_of_a_kind";
+        if (counts.containsValue(3) && counts.containsValue(2)) return "full_house";
+
+        List<Integer> sorted = new ArrayList<>(counts.keySet());
+        Collections.sort(sorted);
+        int consecutive = 1;
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i) == sorted.get(i - 1) + 1) {
+                if (++consecutive >= 4) return "straight";
+            } else {
+                consecutive = 1;
+            }
+        }
+
+        if (counts.containsValue(3)) return "three_of_a_kind";
+        int pairCount = 0;
+        for (int count : counts.values()) {
+            if (count == 2) pairCount++;
+        }
+        if (pairCount >= 2) return "two_pair";
+        if (pairCount == 1) return "one_pair";
+        return "all_different";
+    }
+}
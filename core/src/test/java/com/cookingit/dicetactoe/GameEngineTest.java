@@ -0,0 +1,206 @@
+package com.cookingit.dicetactoe;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GameEngineTest {
+
+    @Test
+    public void scriptedRolls_reachPlacingWithExpectedCombo() {
+        GameEngine engine = new GameEngine(DiceSource.scripted(
+                1, 2, 3, 5, 6,   // all different
+                4, 4, 4, 4,      // reroll dice 1-4, keep the 1
+                1));             // reroll die 0 only, keep the fours
+        assertFalse(engine.rollDice());
+        assertEquals(Combo.ALL_DIFFERENT, engine.getCurrentCombination());
+
+        engine.setDieKeptStatus(0, true);
+        assertFalse(engine.rollDice());
+        assertEquals(Combo.FOUR_OF_A_KIND, engine.getCurrentCombination());
+
+        engine.setDieKeptStatus(0, false);
+        for (int i = 1; i < 5; i++) engine.setDieKeptStatus(i, true);
+        assertFalse(engine.rollDice());
+        assertEquals(Combo.FOUR_OF_A_KIND, engine.getCurrentCombination());
+        assertEquals(GameEngine.GameState.PLACING, engine.getGameState());
+        assertEquals(Bitboard.FULL, engine.getValidMoveMask());
+    }
+
+    @Test
+    public void skipRolls_centerOnlyCombo_allowsOnlyCenter() {
+        GameEngine engine = new GameEngine(DiceSource.scripted(1, 2, 3, 5, 6));
+        engine.rollDice();
+        assertFalse(engine.skipRolls());
+        assertFalse(engine.isValidMove(0, 0));
+        assertTrue(engine.isValidMove(1, 1));
+        engine.makeMove(1, 1);
+        assertEquals(Player.X, engine.getCellValue(1, 1));
+        assertEquals(Player.O, engine.getCurrentPlayer());
+        assertEquals(GameEngine.GameState.ROLLING, engine.getGameState());
+    }
+
+    @Test
+    public void completingALine_endsGameAndScores() {
+        int[] faces = new int[5 * 5];
+        Arrays.fill(faces, 6); // five of a kind every turn
+        GameEngine engine = new GameEngine(DiceSource.scripted(faces));
+        int[][] moves = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}};
+        for (int[] move : moves) {
+            engine.rollDice();
+            engine.skipRolls();
+            engine.makeMove(move[0], move[1]);
+        }
+        assertEquals(GameEngine.GameState.GAME_OVER, engine.getGameState());
+        assertEquals(Player.X, engine.getWinner());
+        assertFalse(engine.isDraw());
+        assertEquals(1, engine.getPlayerXScore());
+    }
+
+    @Test
+    public void diceAccessors_readInPlaceAndResetOnSwitch() {
+        GameEngine engine = new GameEngine(DiceSource.scripted(6, 6, 6, 6, 6));
+        engine.rollDice();
+        int[] out = new int[engine.getDiceCount()];
+        engine.copyDice(out);
+        assertArrayEquals(new int[]{6, 6, 6, 6, 6}, out);
+
+        // getDiceValues hands out a copy, not the engine's buffer
+        engine.getDiceValues()[0] = 1;
+        assertEquals(6, engine.getDie(0));
+
+        engine.skipRolls();
+        engine.makeMove(1, 1);
+        engine.copyDice(out);
+        assertArrayEquals(new int[5], out);
+    }
+
+    @Test
+    public void incrementalWinCheck_matchesFullBoardScan() {
+        for (long seed = 0; seed < 200; seed++) {
+            GameEngine engine = new GameEngine(DiceSource.seeded(seed));
+            while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+                engine.rollDice();
+                if (engine.skipRolls()) {
+                    engine.makeMove(-1, -1);
+                    continue;
+                }
+                int cell = Integer.numberOfTrailingZeros(engine.getValidMoveMask());
+                engine.makeMove(cell / 3, cell % 3);
+            }
+            int x = engine.getBoardMask(Player.X);
+            int o = engine.getBoardMask(Player.O);
+            Player expected = Bitboard.hasLine(x) ? Player.X : Bitboard.hasLine(o) ? Player.O : null;
+            assertEquals(expected, engine.getWinner());
+            assertEquals(expected == null && Bitboard.isFull(x | o), engine.isDraw());
+        }
+    }
+
+    @Test
+    public void syncWithRemote_appliesAddedMarksAndRebuildsOnReset() {
+        GameEngine engine = new GameEngine(DiceSource.seeded(1));
+        engine.syncWithRemote(remote(0b000_000_011, 0b000_011_000));
+        assertNull(engine.getWinner());
+        engine.syncWithRemote(remote(0b000_000_111, 0b000_011_000));
+        assertEquals(Player.X, engine.getWinner());
+        assertEquals(GameEngine.GameState.GAME_OVER, engine.getGameState());
+
+        // A fresh remote board clears the old line
+        engine.syncWithRemote(remote(0, 0b000_010_000));
+        assertNull(engine.getWinner());
+        assertFalse(engine.isDraw());
+    }
+
+    @Test
+    public void applyRemoteMove_followsTheSenderAndRejectsTakenCells() {
+        // The sender plays seeded turns; the receiver only sees each move as a delta
+        GameEngine sender = new GameEngine(DiceSource.seeded(3));
+        GameEngine receiver = new GameEngine(DiceSource.seeded(99));
+        while (sender.getGameState() != GameEngine.GameState.GAME_OVER) {
+            Player mover = sender.getCurrentPlayer();
+            sender.rollDice();
+            int cell = sender.skipRolls() ? -1 : Integer.numberOfTrailingZeros(sender.getValidMoveMask());
+            sender.makeMove(cell < 0 ? -1 : cell / 3, cell < 0 ? -1 : cell % 3);
+            assertTrue(receiver.applyRemoteMove(cell, mover));
+            assertEquals(sender.getBoardMask(Player.X), receiver.getBoardMask(Player.X));
+            assertEquals(sender.getBoardMask(Player.O), receiver.getBoardMask(Player.O));
+            assertEquals(sender.getGameState(), receiver.getGameState());
+            assertEquals(sender.getWinner(), receiver.getWinner());
+            if (sender.getGameState() != GameEngine.GameState.GAME_OVER) {
+                assertEquals(sender.getCurrentPlayer(), receiver.getCurrentPlayer());
+            }
+        }
+        assertFalse(receiver.applyRemoteMove(0, Player.X));
+
+        GameEngine engine = new GameEngine(DiceSource.seeded(1));
+        assertTrue(engine.applyRemoteMove(4, Player.X));
+        assertFalse(engine.applyRemoteMove(4, Player.O));
+        assertEquals(Player.O, engine.getCurrentPlayer());
+    }
+
+    @Test
+    public void undoAction_restoresEveryPriorState() {
+        SeededDiceSource random = new SeededDiceSource(7);
+        for (int game = 0; game < 50; game++) {
+            GameEngine engine = new GameEngine(random);
+            List<String> history = new ArrayList<>();
+            int[] faces = new int[5];
+            while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+                history.add(snapshot(engine));
+                int action;
+                if (engine.getGameState() == GameEngine.GameState.PLACING) {
+                    action = Actions.place(Integer.numberOfTrailingZeros(engine.getValidMoveMask()));
+                } else if (engine.getRollsLeft() == 0) {
+                    action = Actions.pass();
+                } else if (engine.hasDiceRolled() && random.nextInt(3) == 0) {
+                    action = Actions.stop();
+                } else {
+                    for (int i = 0; i < faces.length; i++) faces[i] = random.roll();
+                    action = Actions.roll(random.nextInt(32), faces);
+                }
+                engine.applyAction(action);
+            }
+            for (int i = history.size() - 1; i >= 0; i--) {
+                assertTrue(engine.undoAction());
+                assertEquals(history.get(i), snapshot(engine));
+            }
+            assertFalse(engine.canUndo());
+        }
+    }
+
+    private static String snapshot(GameEngine engine) {
+        return engine.getBoardMask(Player.X) + " " + engine.getBoardMask(Player.O)
+                + " " + engine.getCurrentPlayer() + " " + Arrays.toString(engine.getDiceValues())
+                + " " + engine.getRollsLeft() + " " + engine.getKeptMask()
+                + " " + engine.getCurrentCombination() + " " + engine.getGameState()
+                + " " + engine.hasDiceRolled() + " " + engine.getValidMoveMask()
+                + " " + engine.getWinner() + " " + engine.isDraw()
+                + " " + engine.getPlayerXScore() + " " + engine.getPlayerOScore();
+    }
+
+    private static RemoteGameState remote(int x, int o) {
+        return new RemoteGameState() {
+            @Override public int getBoardMask(Player player) { return player == Player.X ? x : o; }
+            @Override public Player getCurrentPlayerValue() { return Player.X; }
+            @Override public List<Integer> getDiceAsList() { return Arrays.asList(0, 0, 0, 0, 0); }
+            @Override public Combo getComboValue() { return null; }
+            @Override public boolean isPlayingStatus() { return true; }
+            @Override public boolean isGameOverStatus() { return Bitboard.hasLine(x) || Bitboard.hasLine(o); }
+        };
+    }
+
+    @Test
+    public void seededSource_isReproducible() {
+        DiceSource a = DiceSource.seeded(42);
+        DiceSource b = DiceSource.seeded(42);
+        for (int i = 0; i < 1000; i++) {
+            int face = a.roll();
+            assertTrue(face >= 1 && face <= 6);
+            assertEquals(face, b.roll());
+        }
+    }
+}
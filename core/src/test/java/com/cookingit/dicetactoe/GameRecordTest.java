@@ -0,0 +1,96 @@
+package com.cookingit.dicetactoe;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GameRecordTest {
+
+    @Test
+    public void replay_reproducesRecordedGames() {
+        SeededDiceSource random = new SeededDiceSource(11);
+        for (int game = 0; game < 200; game++) {
+            GameEngine engine = new GameEngine(random);
+            GameRecord record = new GameRecord();
+            engine.setRecord(record);
+            while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+                if (engine.canUndo() && random.nextInt(10) == 0) {
+                    engine.undoAction();
+                } else if (engine.getGameState() == GameEngine.GameState.PLACING) {
+                    int cell = Integer.numberOfTrailingZeros(engine.getValidMoveMask());
+                    engine.makeMove(cell / 3, cell % 3);
+                } else if (engine.getRollsLeft() == 0) {
+                    engine.makeMove(-1, -1);
+                } else if (engine.hasDiceRolled() && random.nextInt(3) == 0) {
+                    engine.skipRolls();
+                } else {
+                    engine.setKeptMask(random.nextInt(32));
+                    engine.rollDice();
+                }
+            }
+
+            GameRecord decoded = game % 2 == 0
+                    ? GameRecord.fromBytes(record.toByteArray())
+                    : GameRecord.fromHex(record.toString());
+            assertEquals(record.eventCount(), decoded.eventCount());
+            GameEngine replayed = decoded.replay();
+            assertEquals(snapshot(engine), snapshot(replayed));
+        }
+    }
+
+    @Test
+    public void firstRollOfATurn_takesThreeBytes() {
+        GameEngine engine = new GameEngine(DiceSource.scripted(6, 6, 6, 6, 6));
+        GameRecord record = new GameRecord();
+        engine.setRecord(record);
+        engine.rollDice();
+        engine.skipRolls();
+        engine.makeMove(1, 1);
+        // version byte, roll, stop, place
+        assertEquals(1 + 3 + 1 + 1, record.size());
+        assertEquals(3, record.eventCount());
+    }
+
+    @Test
+    public void customRules_roundTripThroughRulesHeader() {
+        GameRules rules = GameRules.of(6, 4, 7);
+        SeededDiceSource random = new SeededDiceSource(12);
+        for (int game = 0; game < 20; game++) {
+            GameEngine engine = new GameEngine(rules, random);
+            engine.setRecord(new GameRecord(rules));
+            while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+                if (engine.canUndo() && random.nextInt(10) == 0) {
+                    engine.undoAction();
+                } else if (engine.getGameState() == GameEngine.GameState.PLACING) {
+                    engine.applyAction(Actions.place(Long.numberOfTrailingZeros(engine.getValidMoves())));
+                } else if (engine.getRollsLeft() == 0) {
+                    engine.makeMove(-1, -1);
+                } else {
+                    engine.setKeptMask(random.nextInt(1 << rules.dice()));
+                    engine.rollDice();
+                }
+            }
+            byte[] bytes = engine.getRecord().toByteArray();
+            assertEquals(GameRecord.RULES_VERSION, bytes[0]);
+            GameRecord decoded = GameRecord.fromBytes(bytes);
+            assertSame(rules, decoded.getRules());
+            assertEquals(snapshot(engine), snapshot(decoded.replay()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromBytes_rejectsUnknownVersion() {
+        GameRecord.fromBytes(new byte[]{(byte) (GameRecord.VERSION + 1)});
+    }
+
+    private static String snapshot(GameEngine engine) {
+        return engine.getBoard(Player.X) + " " + engine.getBoard(Player.O)
+                + " " + engine.getCurrentPlayer() + " " + Arrays.toString(engine.getDiceValues())
+                + " " + engine.getRollsLeft() + " " + engine.getKeptMask()
+                + " " + engine.getCurrentCombination() + " " + engine.getGameState()
+                + " " + engine.getWinner() + " " + engine.isDraw()
+                + " " + engine.getPlayerXScore() + " " + engine.getPlayerOScore();
+    }
+}
@@ -0,0 +1,111 @@
+package com.cookingit.dicetactoe;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GameRulesTest {
+
+    @Test
+    public void standardRules_matchBitboardAndComboMasks() {
+        GameRules rules = GameRules.STANDARD;
+        assertSame(rules, GameRules.of(3, 3, 5));
+        assertEquals(Bitboard.LINES.length, rules.lineCount());
+        for (int i = 0; i < Bitboard.LINES.length; i++) {
+            assertEquals(Bitboard.LINES[i], rules.line(i));
+        }
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            assertArrayEquals(Bitboard.LINES_THROUGH[cell], rules.linesThrough(cell));
+        }
+        for (Combo combo : Combo.values()) {
+            assertEquals(combo.name(), combo.allowedMask(), rules.allowedMask(combo));
+        }
+    }
+
+    @Test
+    public void classify_histogramMatchesTableForFiveDice() {
+        int[] dice = new int[DiceCombos.DICE];
+        for (int packed = 0; packed < DiceCombos.PACKED_SIZE; packed++) {
+            int rest = packed;
+            long histogram = 0;
+            for (int i = 0; i < dice.length; i++) {
+                dice[i] = rest % DiceCombos.FACES + 1;
+                histogram += 1L << (4 * (dice[i] - 1));
+                rest /= DiceCombos.FACES;
+            }
+            assertEquals(Arrays.toString(dice), DiceCombos.classify(packed), DiceCombos.classifyHistogram(histogram, 4));
+        }
+        GameRules eight = GameRules.of(3, 3, 8);
+        assertEquals(Combo.FULL_HOUSE, eight.classify(new int[]{1, 1, 1, 2, 2, 2, 5, 6}));
+        assertEquals(Combo.FIVE_OF_A_KIND, eight.classify(new int[]{3, 3, 3, 3, 3, 3, 1, 2}));
+        assertEquals(Combo.STRAIGHT, GameRules.of(3, 3, 3).classify(new int[]{4, 6, 5}));
+    }
+
+    @Test
+    public void lines_countEveryRunOfLineLength() {
+        // Each direction has (size - length + 1) starts along it and size across it
+        GameRules rules = GameRules.of(7, 4, 5);
+        assertEquals(2 * 7 * 4 + 2 * 4 * 4, rules.lineCount());
+        assertEquals(49, rules.cells());
+        // The middle cell of a 7x7 board lies on four runs in each direction
+        assertEquals(16, rules.linesThrough(rules.cell(3, 3)).length);
+        assertEquals(3, rules.linesThrough(0).length);
+        assertEquals(-1L, GameRules.of(8, 5, 5).fullMask());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_rejectsLineLongerThanBoard() {
+        GameRules.of(4, 5, 5);
+    }
+
+    @Test
+    public void largeBoardGames_endOnTheFirstCompletedLine() {
+        GameRules rules = GameRules.of(7, 4, 8);
+        SeededDiceSource random = new SeededDiceSource(5);
+        GameEngine engine = new GameEngine(rules, random);
+        for (int game = 0; game < 100; game++) {
+            engine.newGame();
+            while (engine.getGameState() != GameEngine.GameState.GAME_OVER) {
+                assertNull(engine.getWinner());
+                if (engine.getGameState() == GameEngine.GameState.PLACING) {
+                    long valid = engine.getValidMoves();
+                    assertEquals(0, valid & engine.getOccupied());
+                    int cell = Long.numberOfTrailingZeros(valid);
+                    engine.applyAction(Actions.place(cell));
+                } else if (engine.getRollsLeft() == 0) {
+                    engine.applyAction(Actions.pass());
+                } else {
+                    engine.setKeptMask(random.nextInt(1 << rules.dice()));
+                    engine.rollDice();
+                }
+            }
+            Player winner = engine.getWinner();
+            boolean xLine = hasLine(engine.getBoard(Player.X), rules);
+            boolean oLine = hasLine(engine.getBoard(Player.O), rules);
+            assertFalse(xLine && oLine);
+            assertEquals(xLine ? Player.X : oLine ? Player.O : null, winner);
+            assertEquals(winner == null, engine.isDraw());
+        }
+    }
+
+    // Brute-force scan of every run of lineLength cells
+    private static boolean hasLine(long board, GameRules rules) {
+        int size = rules.size();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                for (int[] d : directions) {
+                    int run = 0;
+                    for (int r = row, c = col; r >= 0 && r < size && c >= 0 && c < size
+                            && (board & rules.bit(r, c)) != 0; r += d[0], c += d[1]) {
+                        run++;
+                    }
+                    if (run >= rules.lineLength()) return true;
+                }
+            }
+        }
+        return false;
+    }
+}
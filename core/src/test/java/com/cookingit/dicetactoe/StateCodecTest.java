@@ -0,0 +1,39 @@
+package com.cookingit.dicetactoe;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StateCodecTest {
+
+    @Test
+    public void packedBoard_decodesLikeTheMapLayout() {
+        // Every assignment of empty/X/O to the nine cells
+        for (int n = 0, total = (int) Math.pow(3, Bitboard.CELLS); n < total; n++) {
+            int x = 0, o = 0;
+            for (int cell = 0, rest = n; cell < Bitboard.CELLS; cell++, rest /= 3) {
+                if (rest % 3 == 1) x |= 1 << cell;
+                if (rest % 3 == 2) o |= 1 << cell;
+            }
+            int packed = StateCodec.packBoard(x, o);
+            assertTrue(packed < 1 << (2 * Bitboard.CELLS));
+            Map<String, String> map = StateCodec.encodeBoard(x, o);
+            for (Player player : Player.values()) {
+                assertEquals(StateCodec.decodeBoardMask(map, player), StateCodec.unpackBoardMask(packed, player));
+            }
+        }
+    }
+
+    @Test
+    public void packedDice_roundTrip() {
+        int[] dice = {6, 0, 3, 1, 5};
+        int packed = StateCodec.packDice(dice);
+        for (int i = 0; i < dice.length; i++) {
+            assertEquals(dice[i], StateCodec.unpackDie(packed, i));
+        }
+        assertEquals(0, StateCodec.packDice(new int[DiceCombos.DICE]));
+        assertEquals(6, StateCodec.unpackDie(StateCodec.packDice(new int[]{1, 1, 1, 1, 1, 1, 1, 6}), 7));
+    }
+}
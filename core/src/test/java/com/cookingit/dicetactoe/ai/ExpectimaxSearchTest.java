@@ -0,0 +1,100 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceSource;
+import com.cookingit.dicetactoe.GameEngine;
+import com.cookingit.dicetactoe.GameRules;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExpectimaxSearchTest {
+    // 5x5, four in a row, five dice
+    private static final GameRules RULES = GameRules.of(5, 4, 5);
+    // Every roll is five of a kind, which allows any cell
+    private static final DiceSource ALWAYS_SIX = () -> 6;
+
+    @Test
+    public void chooseCell_completesLineBeforeBlocking() {
+        // X builds three of the top row, O three of the bottom row
+        GameEngine engine = new GameEngine(RULES, ALWAYS_SIX);
+        int[][] moves = {{0, 0}, {4, 0}, {0, 1}, {4, 1}, {0, 2}, {4, 2}};
+        for (int[] move : moves) playTurn(engine, move[0], move[1]);
+        engine.rollDice();
+        engine.skipRolls();
+
+        assertEquals(RULES.cell(0, 3), new ExpectimaxSearch(100).chooseCell(engine));
+    }
+
+    @Test
+    public void chooseCell_blocksThreeInARow() {
+        // O has the first three of the bottom row and X nothing close, so X must take (4, 3)
+        GameEngine engine = new GameEngine(RULES, ALWAYS_SIX);
+        int[][] moves = {{0, 0}, {4, 0}, {2, 4}, {4, 1}, {0, 4}, {4, 2}};
+        for (int[] move : moves) playTurn(engine, move[0], move[1]);
+        engine.rollDice();
+        engine.skipRolls();
+
+        assertEquals(RULES.cell(4, 3), new ExpectimaxSearch(100).chooseCell(engine));
+    }
+
+    @Test
+    public void chooseKeepMask_stopsOnWinningRoll() {
+        GameEngine engine = new GameEngine(RULES, ALWAYS_SIX);
+        int[][] moves = {{0, 0}, {4, 0}, {0, 1}, {4, 1}, {0, 2}, {4, 2}};
+        for (int[] move : moves) playTurn(engine, move[0], move[1]);
+        engine.rollDice();
+        assertEquals(Combo.FIVE_OF_A_KIND, engine.getCurrentCombination());
+        assertEquals(AiPlayer.stopRolling(engine), new ExpectimaxSearch(100).chooseKeepMask(engine));
+    }
+
+    @Test
+    public void search_stopsAtDepthLimit() {
+        GameEngine engine = new GameEngine(GameRules.of(7, 4, 8), DiceSource.seeded(7));
+        engine.rollDice();
+        ExpectimaxSearch search = new ExpectimaxSearch(0, 2);
+        search.chooseKeepMask(engine);
+        assertEquals(2, search.getCompletedDepth());
+        long nodes = search.getNodeCount();
+        assertTrue(nodes > 0);
+
+        // Without a time limit the search is deterministic
+        ExpectimaxSearch fresh = new ExpectimaxSearch(0, 2);
+        fresh.chooseKeepMask(engine);
+        assertEquals(nodes, fresh.getNodeCount());
+
+        // Node counts are per decision, not cumulative; the warm table can only save work
+        search.chooseKeepMask(engine);
+        assertEquals(2, search.getCompletedDepth());
+        assertTrue(search.getNodeCount() <= nodes);
+    }
+
+    @Test
+    public void diceOdds_sumToOne() {
+        for (int dice = GameRules.MIN_DICE; dice <= GameRules.MAX_DICE; dice++) {
+            DiceOdds odds = DiceOdds.of(GameRules.of(3, 3, dice));
+            double turn = 0;
+            for (Combo combo : Combo.values()) turn += odds.turnChance(combo.ordinal());
+            assertEquals(1, turn, 1e-9);
+            for (int rolled = 0; rolled <= dice; rolled++) {
+                double total = 0;
+                for (int i = 0; i < odds.outcomeCount(rolled); i++) total += odds.chance(rolled, i);
+                assertEquals(1, total, 1e-9);
+            }
+        }
+        // Five of a kind in one roll of five dice: 6 / 6^5
+        DiceOdds five = DiceOdds.of(GameRules.STANDARD);
+        double fiveOfAKind = 0;
+        for (int i = 0; i < five.outcomeCount(5); i++) {
+            if (DiceOdds.largestGroup(five.outcome(5, i)) == five.outcome(5, i)) fiveOfAKind += five.chance(5, i);
+        }
+        assertEquals(6 / 7776.0, fiveOfAKind, 1e-12);
+    }
+
+    private static void playTurn(GameEngine engine, int row, int col) {
+        engine.rollDice();
+        engine.skipRolls();
+        engine.makeMove(row, col);
+    }
+}
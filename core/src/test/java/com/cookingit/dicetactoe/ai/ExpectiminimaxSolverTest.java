@@ -0,0 +1,47 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceSource;
+import com.cookingit.dicetactoe.GameEngine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExpectiminimaxSolverTest {
+
+    private final ExpectiminimaxSolver solver = ExpectiminimaxSolver.getInstance();
+
+    @Test
+    public void emptyBoard_favoursFirstPlayer() {
+        double value = solver.turnValue(0, 0);
+        assertTrue(value > 0.5 && value < 1);
+    }
+
+    @Test
+    public void symmetricPositions_shareValue() {
+        int mine = Bitboard.bit(0, 0) | Bitboard.bit(1, 1);
+        int theirs = Bitboard.bit(0, 1);
+        // Same position rotated a quarter turn clockwise
+        int rotatedMine = Bitboard.bit(0, 2) | Bitboard.bit(1, 1);
+        int rotatedTheirs = Bitboard.bit(1, 2);
+        assertEquals(solver.turnValue(mine, theirs), solver.turnValue(rotatedMine, rotatedTheirs), 1e-12);
+    }
+
+    @Test
+    public void bestCell_completesOpenLine() {
+        int mine = Bitboard.bit(0, 0) | Bitboard.bit(0, 1);
+        int theirs = Bitboard.bit(1, 1) | Bitboard.bit(2, 2);
+        assertEquals(Bitboard.cell(0, 2), solver.bestCell(Combo.FOUR_OF_A_KIND, mine, theirs));
+    }
+
+    @Test
+    public void fiveOfAKindOnFirstRoll_stopsRolling() {
+        GameEngine engine = new GameEngine(DiceSource.scripted(3, 3, 3, 3, 3));
+        engine.rollDice();
+        assertEquals(AiPlayer.STOP_ROLLING, solver.bestKeepMask(engine));
+        double value = solver.value(engine);
+        assertTrue(value > solver.turnValue(0, 0));
+    }
+}
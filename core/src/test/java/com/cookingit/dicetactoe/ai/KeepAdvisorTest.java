@@ -0,0 +1,52 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.DiceCombos;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeepAdvisorTest {
+
+    @Test
+    public void lastRoll_matchesEnumeration() {
+        int[] dice = {2, 2, 2, 2, 5};
+        double[] weights = KeepAdvisor.comboWeights(0, 0);
+        double[][] distributions = KeepAdvisor.comboDistributions(dice, 1, weights);
+
+        // Rerolling everything: count combos over all 7776 rolls
+        double[] expected = new double[Combo.values().length];
+        for (int packed = 0; packed < DiceCombos.PACKED_SIZE; packed++) {
+            expected[DiceCombos.classify(packed).ordinal()] += 1.0 / DiceCombos.PACKED_SIZE;
+        }
+        assertArrayEquals(expected, distributions[0], 1e-12);
+
+        // Keeping the four twos: one die in six completes five of a kind
+        double[] keepFour = distributions[0b01111];
+        assertEquals(1.0 / 6, keepFour[Combo.FIVE_OF_A_KIND.ordinal()], 1e-12);
+        assertEquals(5.0 / 6, keepFour[Combo.FOUR_OF_A_KIND.ordinal()], 1e-12);
+        assertEquals(1.0, distributions[KeepAdvisor.KEEP_ALL][Combo.FOUR_OF_A_KIND.ordinal()], 0);
+    }
+
+    @Test
+    public void everyMask_sumsToOne() {
+        int[] dice = {1, 3, 3, 4, 6};
+        double[][] distributions = KeepAdvisor.comboDistributions(dice, 2, KeepAdvisor.comboWeights(0, 0));
+        for (double[] distribution : distributions) {
+            double sum = 0;
+            for (double p : distribution) sum += p;
+            assertEquals(1.0, sum, 1e-9);
+        }
+    }
+
+    @Test
+    public void centerWins_keepsStraightForAllDifferent() {
+        // Center completes the middle row; all-different and straights reach it
+        int mine = Bitboard.bit(1, 0) | Bitboard.bit(1, 2);
+        int theirs = Bitboard.bit(0, 0) | Bitboard.bit(2, 2);
+        int[] dice = {1, 2, 3, 4, 6};
+        assertEquals(KeepAdvisor.KEEP_ALL, KeepAdvisor.bestKeepMask(dice, 2, mine, theirs));
+    }
+}
@@ -0,0 +1,66 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+import com.cookingit.dicetactoe.DiceSource;
+import com.cookingit.dicetactoe.GameEngine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MctsSearchTest {
+
+    @Test
+    public void chooseCell_takesImmediateWin() {
+        // X: top row corners plus center taken by O; five of a kind allows any cell
+        GameEngine engine = new GameEngine(DiceSource.scripted(
+                6, 6, 6, 6, 6,   // X
+                1, 2, 3, 5, 6,   // O: all different, center
+                6, 6, 6, 6, 6,   // X
+                1, 2, 3, 5, 6,   // O: center taken, passes
+                4, 4, 4, 4, 4)); // X
+        playTurn(engine, 0, 0);
+        playTurn(engine, 1, 1);
+        playTurn(engine, 0, 2);
+        engine.rollDice();
+        assertTrue(engine.skipRolls());
+        engine.makeMove(-1, -1);
+        engine.rollDice();
+        engine.skipRolls();
+
+        MctsSearch search = new MctsSearch(1000, 2000, 2);
+        assertEquals(Bitboard.cell(0, 1), search.chooseCell(engine));
+        search.shutdown();
+    }
+
+    @Test
+    public void search_stopsAtIterationBudget() {
+        GameEngine engine = new GameEngine(DiceSource.seeded(7));
+        engine.rollDice();
+        MctsSearch search = new MctsSearch(0, 400, 2);
+        search.chooseKeepMask(engine);
+        assertEquals(400, search.getLastIterations());
+        search.shutdown();
+    }
+
+    @Test
+    public void interruptedSearch_stopsRollingInsteadOfFailing() {
+        GameEngine engine = new GameEngine(DiceSource.seeded(7));
+        engine.rollDice();
+        MctsSearch search = new MctsSearch(0, 400, 2);
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(AiPlayer.STOP_ROLLING, search.chooseKeepMask(engine));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+            search.shutdown();
+        }
+    }
+
+    private static void playTurn(GameEngine engine, int row, int col) {
+        engine.rollDice();
+        engine.skipRolls();
+        engine.makeMove(row, col);
+    }
+}
@@ -0,0 +1,26 @@
+package com.cookingit.dicetactoe.ai;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class SelfPlaySimulatorTest {
+
+    @Test
+    public void run_accountsForEveryGame() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SelfPlaySimulator.Stats stats = new SelfPlaySimulator(
+                SelfPlaySimulator.policy("random"), SelfPlaySimulator.policy("greedy")).run(3000, 42L, pool);
+        pool.shutdown();
+
+        assertEquals(3000, stats.games);
+        assertEquals(stats.games, stats.xWins + stats.oWins + stats.draws);
+        long placed = 0;
+        for (long count : stats.comboCounts) placed += count;
+        assertEquals(stats.turns, placed + stats.passes);
+        // Greedy keeps and win/block placement beat random play even moving second
+        assertTrue(stats.oWins > stats.xWins);
+    }
+}
@@ -0,0 +1,39 @@
+package com.cookingit.dicetactoe.ai;
+
+import com.cookingit.dicetactoe.Bitboard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void canonicalHash_sameForAllSymmetricBoards() {
+        int mine = Bitboard.bit(0, 0) | Bitboard.bit(0, 1);
+        int theirs = Bitboard.bit(1, 1) | Bitboard.bit(2, 0);
+        long canonical = BoardHash.canonical(mine, theirs);
+        for (int s = 0; s < BoardHash.SYMMETRIES; s++) {
+            assertEquals(canonical, BoardHash.canonical(BoardHash.transform(s, mine), BoardHash.transform(s, theirs)));
+        }
+        assertNotEquals(canonical, BoardHash.canonical(theirs, mine));
+    }
+
+    @Test
+    public void fullBucket_keepsDeeperEntry() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.put(1L, 0.25, 5);
+        table.put(2L, 0.5, 1);
+        assertEquals(2, table.size());
+
+        table.put(3L, 0.75, 3);
+        assertEquals(2, table.size());
+        assertEquals(0.25, table.get(1L), 0);
+        assertTrue(Double.isNaN(table.get(2L)));
+        assertEquals(0.75, table.get(3L), 0);
+
+        table.put(1L, 0.125, 5);
+        assertEquals(0.125, table.get(1L), 0);
+        assertEquals(2, table.size());
+    }
+}
@@ -0,0 +1,84 @@
+package com.cookingit.dicetactoe.archive;
+
+import com.cookingit.dicetactoe.Combo;
+import com.cookingit.dicetactoe.GameRecord;
+import com.cookingit.dicetactoe.ai.SelfPlaySimulator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class GameArchiveTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void analyze_matchesTheGamesThatWereWritten() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("games.dtta");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SelfPlaySimulator simulator = new SelfPlaySimulator(
+                SelfPlaySimulator.policy("greedy"), SelfPlaySimulator.policy("random"));
+        SelfPlaySimulator.Stats played;
+        try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+            simulator.setArchive(writer);
+            played = simulator.run(5000, 3L, pool);
+            // Placing before rolling breaks the rules
+            GameRecord illegal = new GameRecord();
+            illegal.appendPlace(4);
+            writer.append(illegal);
+        }
+
+        try (GameArchive archive = GameArchive.open(path)) {
+            assertEquals(5001, archive.size());
+            ArchiveStats stats = archive.analyze(pool);
+            assertEquals(played.games, stats.games);
+            assertEquals(1, stats.invalid);
+            assertEquals(played.xWins, stats.xWins);
+            assertEquals(played.oWins, stats.oWins);
+            assertEquals(played.draws, stats.draws);
+            assertEquals(played.turns, stats.turns);
+            assertEquals(played.passes, stats.passes);
+            for (Combo combo : Combo.values()) {
+                long total = 0;
+                for (long[] turn : stats.comboByTurn) total += turn[combo.ordinal()];
+                assertEquals(played.comboCounts[combo.ordinal()], total);
+            }
+            assertEquals(1, archive.get(5000).eventCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void analyze_countsRecordsWithCorruptOffsetsAsInvalid() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("corrupt.dtta");
+        SelfPlaySimulator simulator = new SelfPlaySimulator(
+                SelfPlaySimulator.policy("greedy"), SelfPlaySimulator.policy("greedy"));
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+            simulator.setArchive(writer);
+            simulator.run(10, 5L, pool);
+        } finally {
+            pool.shutdown();
+        }
+        // index[2] is the end of game 1 and the start of game 2
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, Long.MAX_VALUE / 2);
+            channel.write(offset, GameArchive.HEADER_SIZE + 8 * 2);
+        }
+
+        try (GameArchive archive = GameArchive.open(path)) {
+            ArchiveStats stats = archive.analyze();
+            assertEquals(8, stats.games);
+            assertEquals(2, stats.invalid);
+        }
+    }
+}